@@ -0,0 +1,66 @@
+package alien;
+
+import alien.entity.Alien;
+
+/**
+ * Class used to set up games in a known configuration for the benchmarks.
+ * 
+ * @author Ole
+ */
+final class BenchmarkGames {
+	/*
+	 * The band of the screen between the lowest aliens and the top of the
+	 * barricades. Missiles placed here do not collide with anything, so the
+	 * collision checks have to go through every entity for each of them.
+	 */
+	private static final int STRAY_Y_MIN = 190;
+	private static final int STRAY_Y_MAX = 300;
+
+	// seed used for everything random, so that runs are comparable
+	private static final long SEED = 42;
+
+	private BenchmarkGames() {
+	}
+
+	/**
+	 * Create a game which is being played, with the given number of aliens
+	 * left in the formation.
+	 * 
+	 * @param aliveAliens
+	 *            The number of aliens alive, at most ALIEN_ROWS * ALIEN_COLS.
+	 * @return The game.
+	 */
+	static GameSimulation playing(int aliveAliens) {
+		GameSimulation sim = new GameSimulation(SEED);
+		sim.newGame();
+		sim.pressSpace();
+		Alien[] aliens = sim.getAliens();
+		java.util.Random random = new java.util.Random(SEED);
+		int alive = aliens.length;
+		while (alive > aliveAliens) {
+			int i = random.nextInt(aliens.length);
+			if (aliens[i] != null) {
+				sim.killAlien(i);
+				alive--;
+			}
+		}
+		return sim;
+	}
+
+	/**
+	 * Add missiles which do not collide with anything to the game.
+	 * 
+	 * @param sim
+	 *            The game.
+	 * @param count
+	 *            The number of missiles to be added.
+	 */
+	static void addStrayMissiles(GameSimulation sim, int count) {
+		java.util.Random random = new java.util.Random(SEED);
+		for (int i = 0; i < count; i++) {
+			int x = random.nextInt(Constants.PANEL_WIDTH);
+			int y = STRAY_Y_MIN + random.nextInt(STRAY_Y_MAX - STRAY_Y_MIN);
+			sim.getMissiles().addPlayerMissile(x, y);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package alien;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Runs the JMH benchmarks with the GC
+ * profiler enabled, so that every result is reported as both throughput and
+ * allocation rate. Any of the usual JMH command line options can be given,
+ * e.g. a regular expression to select benchmarks:
+ * 
+ * <pre>
+ * mvn -B package
+ * java -jar benchmarks/target/benchmarks.jar Collision
+ * </pre>
+ * 
+ * @author Ole
+ */
+public class Benchmarks {
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
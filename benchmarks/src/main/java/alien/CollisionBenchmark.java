@@ -0,0 +1,69 @@
+package alien;
+
+import alien.entity.MissileStore;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the collision checks of one tick. None of the missiles hit
+ * anything, so the game is left unchanged and every check has to go through
+ * all the entities it is tested against.
+ * 
+ * @author Ole
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+	@Param({ "28", "14", "1" })
+	int aliens;
+
+	@Param({ "10", "100", "1000" })
+	int missiles;
+
+	private GameSimulation sim;
+
+	@Setup
+	public void setup() {
+		sim = BenchmarkGames.playing(aliens);
+		BenchmarkGames.addStrayMissiles(sim, missiles);
+	}
+
+	@Benchmark
+	public void processCollisions() {
+		sim.processCollisions();
+	}
+
+	@Benchmark
+	public boolean barricadeCollisionWith() {
+		MissileStore list = sim.getMissiles();
+		boolean hit = false;
+		for (int i = 0; i < list.size(); i++)
+			hit |= sim.barricadeCollisionWith(list.get(i));
+		return hit;
+	}
+
+	@Benchmark
+	public boolean alienCollisionWith() {
+		MissileStore list = sim.getMissiles();
+		boolean hit = false;
+		for (int i = 0; i < list.size(); i++)
+			hit |= sim.alienCollisionWith(list.get(i));
+		return hit;
+	}
+}
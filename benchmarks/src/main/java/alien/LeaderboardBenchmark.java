@@ -0,0 +1,75 @@
+package alien;
+
+import alien.hiscore.Leaderboard;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the leaderboard with a given number of scores: finding the rank
+ * of a score, adding a score, and loading every score from an archive.
+ * 
+ * @author Ole
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class LeaderboardBenchmark {
+	private static final int MAX_SCORE = 1000000;
+
+	@Param({ "1000", "1000000" })
+	int size;
+
+	private Leaderboard board;
+	private byte[] archive;
+	private SplittableRandom random;
+
+	@Setup
+	public void setup() throws IOException {
+		random = new SplittableRandom(42);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i++)
+			sb.append("PLAYER").append(i % 10).append('\t')
+					.append(random.nextInt(MAX_SCORE / 10) * 10).append('\n');
+		archive = sb.toString().getBytes(Charset.forName("UTF-8"));
+		board = new Leaderboard();
+		board.load(new ByteArrayInputStream(archive));
+	}
+
+	@Benchmark
+	public int rank() {
+		return board.rank(random.nextInt(MAX_SCORE));
+	}
+
+	@Benchmark
+	public int add() {
+		// the board grows a little in every iteration, like a real one
+		return board.add("PLAYER", random.nextInt(MAX_SCORE));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Leaderboard load() throws IOException {
+		Leaderboard loaded = new Leaderboard();
+		loaded.load(new ByteArrayInputStream(archive));
+		return loaded;
+	}
+}
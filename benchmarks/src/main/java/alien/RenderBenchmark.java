@@ -0,0 +1,93 @@
+package alien;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering one frame of a game being played (GameRenderer.render,
+ * formerly GamePanel.gameRender) into an off screen image, using the software
+ * pipeline of a headless JVM, and capturing the snapshot it is rendered from.
+ * 
+ * @author Ole
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+	@Param({ "28", "14", "1" })
+	int aliens;
+
+	@Param({ "10", "100", "1000" })
+	int missiles;
+
+	private BufferedImage image;
+	private Graphics g;
+	private GameRenderer renderer;
+	private GameSimulation sim;
+	private FrameSnapshot snapshot = new FrameSnapshot();
+	private int frame;
+
+	@Setup
+	public void setup() {
+		sim = BenchmarkGames.playing(aliens);
+		BenchmarkGames.addStrayMissiles(sim, missiles);
+		renderer = new GameRenderer(null);
+		snapshot.capture(sim);
+		image = new BufferedImage(Constants.PANEL_WIDTH,
+				Constants.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g = image.getGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage gameRender() {
+		renderer.render(g, snapshot);
+		return image;
+	}
+
+	/**
+	 * Capture the snapshot of a frame, as the animation thread does before
+	 * handing it to the render thread.
+	 */
+	@Benchmark
+	public FrameSnapshot capture() {
+		snapshot.capture(sim);
+		return snapshot;
+	}
+
+	/**
+	 * Render a frame incrementally while the player moves from side to side
+	 * and nothing else changes, as in most frames between alien moves. This
+	 * includes capturing the frame.
+	 */
+	@Benchmark
+	public DirtyRegion gameRenderDirty() {
+		if ((frame++ & 64) == 0)
+			sim.getPlayer().moveLeft();
+		else
+			sim.getPlayer().moveRight();
+		snapshot.capture(sim);
+		return renderer.renderDirty(g, snapshot);
+	}
+}
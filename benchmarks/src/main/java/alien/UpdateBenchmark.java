@@ -0,0 +1,62 @@
+package alien;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single game update (GameSimulation.update, formerly
+ * GamePanel.gameUpdate) while a simple bot plays: it sweeps from side to side
+ * and fires whenever it can. A new game is started whenever the level is
+ * cleared or lost, so every measured tick is a tick of play.
+ * 
+ * @author Ole
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+	// length of one tick at 60 FPS in ms
+	private static final int TICK = 16;
+	// number of ticks the bot moves in one direction before turning around
+	private static final int SWEEP_TICKS = 128;
+
+	@Param({ "28", "14", "1" })
+	int aliens;
+
+	private GameSimulation sim;
+	private int tick;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		sim = BenchmarkGames.playing(aliens);
+		tick = 0;
+	}
+
+	@Benchmark
+	public GameSimulation gameUpdate() {
+		if (sim.getState() != GameSimulation.State.PLAYING)
+			sim = BenchmarkGames.playing(aliens);
+		boolean left = (tick / SWEEP_TICKS) % 2 == 0;
+		sim.setLeftPressed(left);
+		sim.setRightPressed(!left);
+		sim.setSpacePressed(true);
+		sim.step(TICK);
+		tick++;
+		return sim;
+	}
+}
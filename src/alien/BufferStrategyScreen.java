@@ -0,0 +1,70 @@
+package alien;
+
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Presents frames with the BufferStrategy of a Canvas. Java2D uses page
+ * flipping where the platform supports it, and otherwise an (accelerated if
+ * possible) blit from a back buffer, which saves the extra copy of the image
+ * made by ImageScreen.
+ * 
+ * @author Ole
+ */
+final class BufferStrategyScreen implements GameScreen {
+	// number of buffers, including the front buffer
+	private static final int NUM_BUFFERS = 2;
+
+	private Canvas canvas;
+	private BufferStrategy strategy;
+	// the graphics context of the frame being rendered
+	private Graphics g;
+
+	/**
+	 * Create a screen presenting frames on the given canvas.
+	 * 
+	 * @param canvas
+	 *            The canvas.
+	 */
+	BufferStrategyScreen(Canvas canvas) {
+		this.canvas = canvas;
+		// all drawing is done by the animation thread
+		canvas.setIgnoreRepaint(true);
+	}
+
+	public Graphics getDrawGraphics() {
+		if (strategy == null) {
+			// the buffers can only be created once the canvas is displayed
+			if (!canvas.isDisplayable())
+				return null;
+			canvas.createBufferStrategy(NUM_BUFFERS);
+			strategy = canvas.getBufferStrategy();
+		}
+		g = strategy.getDrawGraphics();
+		return g;
+	}
+
+	public boolean isPersistent() {
+		// the contents of a back buffer are undefined after it is shown
+		return false;
+	}
+
+	public boolean show(DirtyRegion dirty) {
+		if (g == null)
+			return true;
+		g.dispose();
+		g = null;
+		// the buffer was lost and restored while the frame was being drawn
+		if (strategy.contentsRestored())
+			return false;
+		strategy.show();
+		Toolkit.getDefaultToolkit().sync();
+		return !strategy.contentsLost();
+	}
+
+	public void exposed() {
+		// every frame is presented in full anyway
+	}
+}
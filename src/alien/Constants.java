@@ -37,6 +37,9 @@ public class Constants {
 	public static final int ALIEN_POINTS = 10;
 	public static final int SPECIAL_ALIEN_POINT_MULTIPLIER = 10;
 
+	// Maximum number of missiles on the screen at once
+	public static final int MAX_MISSILES = 4096;
+
 	// Initial number of lives.
 	public static final int DEFAULT_LIVES = 5;
 
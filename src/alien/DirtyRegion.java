@@ -0,0 +1,126 @@
+package alien;
+
+/**
+ * The parts of the screen which have changed since the previous frame, as a
+ * short list of rectangles. Overlapping rectangles are merged as they are
+ * added, and once there are too many to be worth redrawing one by one, the
+ * region simply covers the whole screen.
+ * 
+ * @see GameRenderer
+ * @author Ole
+ */
+public final class DirtyRegion {
+	// maximum number of rectangles before the whole screen is dirty
+	private static final int MAX_RECTS = 32;
+
+	// the rectangles, as x, y, width and height
+	private int[] x = new int[MAX_RECTS];
+	private int[] y = new int[MAX_RECTS];
+	private int[] width = new int[MAX_RECTS];
+	private int[] height = new int[MAX_RECTS];
+	private int size;
+	// true if the whole screen is dirty
+	private boolean full;
+
+	/**
+	 * Add a rectangle to the region. Empty rectangles are ignored.
+	 * 
+	 * @param rx
+	 *            The x-coordinate of the left-hand side.
+	 * @param ry
+	 *            The y-coordinate of the top.
+	 * @param rw
+	 *            The width.
+	 * @param rh
+	 *            The height.
+	 */
+	public void add(int rx, int ry, int rw, int rh) {
+		if (full || rw <= 0 || rh <= 0)
+			return;
+		// merge with a rectangle it overlaps or touches
+		for (int i = 0; i < size; i++) {
+			if (rx <= x[i] + width[i] && x[i] <= rx + rw
+					&& ry <= y[i] + height[i] && y[i] <= ry + rh) {
+				int right = Math.max(rx + rw, x[i] + width[i]);
+				int bottom = Math.max(ry + rh, y[i] + height[i]);
+				rx = Math.min(rx, x[i]);
+				ry = Math.min(ry, y[i]);
+				rw = right - rx;
+				rh = bottom - ry;
+				// the merged rectangle may now overlap others, so add it again
+				remove(i);
+				add(rx, ry, rw, rh);
+				return;
+			}
+		}
+		if (size == MAX_RECTS) {
+			addAll();
+			return;
+		}
+		x[size] = rx;
+		y[size] = ry;
+		width[size] = rw;
+		height[size] = rh;
+		size++;
+	}
+
+	/**
+	 * Make the whole screen dirty.
+	 */
+	public void addAll() {
+		full = true;
+		size = 1;
+		x[0] = 0;
+		y[0] = 0;
+		width[0] = Constants.PANEL_WIDTH;
+		height[0] = Constants.PANEL_HEIGHT;
+	}
+
+	/**
+	 * Make the region empty.
+	 */
+	public void clear() {
+		full = false;
+		size = 0;
+	}
+
+	/**
+	 * Remove the rectangle at the given index, moving the last one into its
+	 * place.
+	 */
+	private void remove(int i) {
+		size--;
+		x[i] = x[size];
+		y[i] = y[size];
+		width[i] = width[size];
+		height[i] = height[size];
+	}
+
+	public boolean isFull() {
+		return full;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getX(int i) {
+		return x[i];
+	}
+
+	public int getY(int i) {
+		return y[i];
+	}
+
+	public int getWidth(int i) {
+		return width[i];
+	}
+
+	public int getHeight(int i) {
+		return height[i];
+	}
+}
@@ -0,0 +1,21 @@
+package alien;
+
+/**
+ * Waits for the deadline of the next frame. How precisely the deadline is met
+ * depends on the timers of the machine, so the strategy is chosen when the
+ * game is started, and the error is kept in FrameStats, as the time
+ * overslept.
+ * 
+ * @see SleepPacer
+ * @see HybridPacer
+ * @author Ole
+ */
+interface FramePacer {
+	/**
+	 * Wait until a deadline. Returns at once if it has passed.
+	 * 
+	 * @param deadline
+	 *            The time to wait until, on the System.nanoTime() clock.
+	 */
+	public void waitUntil(long deadline);
+}
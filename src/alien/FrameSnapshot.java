@@ -0,0 +1,216 @@
+package alien;
+
+import alien.GameSimulation.State;
+import alien.entity.Alien;
+import alien.entity.Barricade;
+import alien.entity.BarricadePart;
+import alien.entity.Missile;
+import alien.entity.MissileStore;
+import alien.entity.Player;
+import alien.entity.PlayerMissile;
+import alien.entity.SpecialAlien;
+
+/**
+ * What a frame of the game shows, copied out of a GameSimulation, so that the
+ * frame can be rendered on another thread while the next ticks are run.
+ * 
+ * Every drawn entity has a fixed slot: the aliens come first, then the
+ * barricade parts, the player, the special alien and finally the missiles.
+ * Each slot holds the kind of entity, or NONE if there is none, and the
+ * bounds it is drawn at, in primitive arrays allocated once, so capturing a
+ * frame never allocates.
+ * 
+ * @see GameRenderer
+ * @see SnapshotBuffer
+ * @author Ole
+ */
+public final class FrameSnapshot {
+	// --- KINDS OF ENTITIES ---
+	public static final int NONE = 0;
+	public static final int ALIEN_ANIM1 = 1;
+	public static final int ALIEN_ANIM2 = 2;
+	public static final int BARRICADE_PART = 3;
+	public static final int PLAYER = 4;
+	public static final int SPECIAL_ALIEN = 5;
+	public static final int PLAYER_MISSILE = 6;
+	public static final int ALIEN_MISSILE = 7;
+
+	// --- SLOTS ---
+	public static final int ALIEN_SLOT = 0;
+	public static final int PART_SLOT = ALIEN_SLOT + Constants.ALIEN_ROWS
+			* Constants.ALIEN_COLS;
+	public static final int PLAYER_SLOT = PART_SLOT
+			+ Constants.BARRICADE_COUNT * Barricade.PART_COUNT;
+	public static final int SPECIAL_ALIEN_SLOT = PLAYER_SLOT + 1;
+	public static final int MISSILE_SLOT = SPECIAL_ALIEN_SLOT + 1;
+	public static final int SLOTS = MISSILE_SLOT + Constants.MAX_MISSILES;
+
+	private State state;
+	// the number of slots in use: all up to the missiles, and one per missile
+	private int size;
+	private final int[] kind = new int[SLOTS];
+	private final int[] x = new int[SLOTS];
+	private final int[] y = new int[SLOTS];
+	private final int[] width = new int[SLOTS];
+	private final int[] height = new int[SLOTS];
+
+	// A key press shown for the first time by this frame, whose latency is
+	// recorded once the frame is on the screen: when it was created and
+	// received, and when the tick showing it ended.
+	private boolean pressShown;
+	private long pressCreated;
+	private long pressReceived;
+	private long pressApplied;
+
+	/**
+	 * Copy what is to be drawn out of a simulation.
+	 * 
+	 * @param sim
+	 *            The simulation.
+	 */
+	public void capture(GameSimulation sim) {
+		state = sim.getState();
+		pressShown = false;
+		Alien[] aliens = sim.getAliens();
+		for (int i = 0; i < aliens.length; i++) {
+			Alien alien = aliens[i];
+			if (alien == null)
+				clear(ALIEN_SLOT + i);
+			else
+				set(ALIEN_SLOT + i, alien.isAnim1() ? ALIEN_ANIM1
+						: ALIEN_ANIM2, alien.getX(), alien.getY(), alien
+						.getDrawWidth(), alien.getDrawHeight());
+		}
+		Barricade[] barricades = sim.getBarricades();
+		for (int i = 0; i < barricades.length; i++) {
+			for (int p = 0; p < Barricade.PART_COUNT; p++) {
+				int slot = PART_SLOT + i * Barricade.PART_COUNT + p;
+				BarricadePart part = barricades[i] == null ? null
+						: barricades[i].getPart(p);
+				if (part == null)
+					clear(slot);
+				else
+					set(slot, BARRICADE_PART, part.getX(), part.getY(), part
+							.getDrawWidth(), part.getDrawHeight());
+			}
+		}
+		Player player = sim.getPlayer();
+		if (player.isAlive())
+			set(PLAYER_SLOT, PLAYER, player.getX(), player.getY(), player
+					.getDrawWidth(), player.getDrawHeight());
+		else
+			clear(PLAYER_SLOT);
+		SpecialAlien specialAlien = sim.getSpecialAlien();
+		if (specialAlien == null)
+			clear(SPECIAL_ALIEN_SLOT);
+		else
+			set(SPECIAL_ALIEN_SLOT, SPECIAL_ALIEN, specialAlien.getX(),
+					specialAlien.getY(), specialAlien.getDrawWidth(),
+					specialAlien.getDrawHeight());
+		MissileStore missiles = sim.getMissiles();
+		for (int i = 0; i < missiles.size(); i++) {
+			Missile missile = missiles.get(i);
+			set(MISSILE_SLOT + i,
+					missile instanceof PlayerMissile ? PLAYER_MISSILE
+							: ALIEN_MISSILE, missile.getX(), missile.getY(),
+					missile.getDrawWidth(), missile.getDrawHeight());
+		}
+		size = MISSILE_SLOT + missiles.size();
+	}
+
+	/**
+	 * Fill a slot.
+	 */
+	private void set(int slot, int k, int sx, int sy, int sw, int sh) {
+		kind[slot] = k;
+		x[slot] = sx;
+		y[slot] = sy;
+		width[slot] = sw;
+		height[slot] = sh;
+	}
+
+	/**
+	 * Empty a slot.
+	 */
+	private void clear(int slot) {
+		set(slot, NONE, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Record that this frame is the first to show a key press.
+	 * 
+	 * @param created
+	 *            When the key event was created.
+	 * @param received
+	 *            When the key listener received it.
+	 * @param applied
+	 *            When the tick showing the key press ended.
+	 */
+	public void setPressShown(long created, long received, long applied) {
+		pressShown = true;
+		pressCreated = created;
+		pressReceived = received;
+		pressApplied = applied;
+	}
+
+	public boolean isPressShown() {
+		return pressShown;
+	}
+
+	public long getPressCreated() {
+		return pressCreated;
+	}
+
+	public long getPressReceived() {
+		return pressReceived;
+	}
+
+	public long getPressApplied() {
+		return pressApplied;
+	}
+
+	/**
+	 * Get the state of the game.
+	 * 
+	 * @return The state.
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Get the number of slots in use. The slots from this one on are empty.
+	 * 
+	 * @return The number of slots.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the kind of entity in a slot.
+	 * 
+	 * @param slot
+	 *            A slot lower than size().
+	 * @return The kind, or NONE if the slot is empty.
+	 */
+	public int getKind(int slot) {
+		return kind[slot];
+	}
+
+	public int getX(int slot) {
+		return x[slot];
+	}
+
+	public int getY(int slot) {
+		return y[slot];
+	}
+
+	public int getWidth(int slot) {
+		return width[slot];
+	}
+
+	public int getHeight(int slot) {
+		return height[slot];
+	}
+}
@@ -0,0 +1,29 @@
+package alien;
+
+/**
+ * An abstract adapter class for receiving notifications from a GameSimulation.
+ * The methods in this class are empty, so a headless simulation can use it as
+ * is, and other listeners only need to override the methods they care about.
+ * 
+ * @see GameListener
+ * @author Ole
+ */
+public abstract class GameAdapter implements GameListener {
+	public void stateChanged(GameSimulation.State state) {
+	}
+
+	public void playSound(int sound) {
+	}
+
+	public void levelChanged(int level) {
+	}
+
+	public void scoreChanged(int score) {
+	}
+
+	public void livesChanged(int lives) {
+	}
+
+	public void alienCountChanged(int alienCount) {
+	}
+}
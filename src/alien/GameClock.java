@@ -0,0 +1,119 @@
+package alien;
+
+/**
+ * The virtual clock which drives a GameSimulation. The clock only moves when
+ * it is ticked, and always by the same fixed amount, so the simulation sees
+ * exactly the same sequence of times whether the ticks are run in real time,
+ * several at once to catch up after a slow frame, or as fast as possible in a
+ * headless run.
+ * 
+ * The tick length is kept in nanoseconds and the time passed to the simulation
+ * is rounded down to milliseconds, so a tick rate which does not divide a
+ * second evenly (e.g. 60 ticks/sec) does not drift.
+ * 
+ * @see GameSimulation#update(long)
+ * @author Ole
+ */
+public final class GameClock {
+	// length of one tick in ns
+	private final long tickLength;
+	// virtual time in ns
+	private long time = 0L;
+	// number of ticks since the clock was created
+	private long ticks = 0L;
+
+	/**
+	 * Create a clock at time 0.
+	 * 
+	 * @param tickLength
+	 *            The length of one tick in nanoseconds.
+	 */
+	public GameClock(long tickLength) {
+		this(tickLength, 0L);
+	}
+
+	/**
+	 * Create a clock which has already been ticked the given number of times,
+	 * e.g. to continue a recorded game from the middle.
+	 * 
+	 * @param tickLength
+	 *            The length of one tick in nanoseconds.
+	 * @param ticks
+	 *            The number of ticks already run.
+	 */
+	public GameClock(long tickLength, long ticks) {
+		if (tickLength <= 0)
+			throw new IllegalArgumentException("Tick length must be positive: "
+					+ tickLength);
+		this.tickLength = tickLength;
+		this.ticks = ticks;
+		time = ticks * tickLength;
+	}
+
+	/**
+	 * Advance the clock by one tick.
+	 * 
+	 * @return The new time in milliseconds.
+	 */
+	public long tick() {
+		time += tickLength;
+		ticks++;
+		return getTime();
+	}
+
+	/**
+	 * Advance the clock by one tick and update the simulation to the new time.
+	 * 
+	 * @param sim
+	 *            The simulation driven by this clock.
+	 */
+	public void tick(GameSimulation sim) {
+		sim.update(tick());
+	}
+
+	/**
+	 * Run the simulation tick by tick until the given amount of virtual time
+	 * has passed, without waiting for real time to pass. Used to fast forward
+	 * headless runs.
+	 * 
+	 * @param sim
+	 *            The simulation driven by this clock.
+	 * @param millis
+	 *            The amount of virtual time to run, in milliseconds.
+	 * @return The number of ticks run.
+	 */
+	public long fastForward(GameSimulation sim, long millis) {
+		long end = time + millis * 1000000L;
+		long start = ticks;
+		while (time + tickLength <= end)
+			tick(sim);
+		return ticks - start;
+	}
+
+	/**
+	 * Get the current virtual time.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public long getTime() {
+		return time / 1000000L;
+	}
+
+	/**
+	 * Get the length of one tick.
+	 * 
+	 * @return The tick length in nanoseconds.
+	 */
+	public long getTickLength() {
+		return tickLength;
+	}
+
+	/**
+	 * Get the number of ticks since the clock was created.
+	 * 
+	 * @return The number of ticks.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+}
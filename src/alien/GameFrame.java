@@ -8,11 +8,14 @@ package alien;
 
 // Based on code by Andrew Davison, April 2005, ad@fivedots.coe.psu.ac.th
 
+import alien.replay.Replay;
+
 import javax.swing.*;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.text.DecimalFormat;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Class used to create the frame in which the game is run. Based of the given
@@ -27,25 +30,17 @@ public final class GameFrame extends JFrame implements WindowListener {
 	private static int DEFAULT_FPS = 60;
 
 	private GamePanel thePanel; // game drawing surface
-	private JTextField fpsField; // displays frames per second
-	private JTextField upsField; // displays updates per second
-	private JTextField levelField;
-	private JTextField scoreField;
-	private JTextField livesField;
-
-	// two decimal places.
-	private DecimalFormat twoDP = new DecimalFormat("0.##");
-
-	private JTextField alienField;
+	private StatusBar statusBar; // displays the FPS, UPS, score etc.
 
 	/*
 	 * ======================================================================
 	 * Constructor
 	 * ======================================================================
 	 */
-	public GameFrame(long period) {
+	public GameFrame(long period, boolean bufferStrategy, int timeScale,
+			Replay replay, FramePacer pacer, boolean pipelined) {
 		super(Constants.GAME_NAME);
-		makeGUI(period);
+		makeGUI(period, bufferStrategy, timeScale, replay, pacer, pipelined);
 
 		addWindowListener(this);
 		pack();
@@ -59,75 +54,26 @@ public final class GameFrame extends JFrame implements WindowListener {
 	 * FPS) to the content pane.
 	 * ======================================================================
 	 */
-	private void makeGUI(long period) {
+	private void makeGUI(long period, boolean bufferStrategy,
+			int timeScale, Replay replay, FramePacer pacer, boolean pipelined) {
 		Container c = getContentPane();
 
-		JPanel ctrls = new JPanel(); // a row of textfields
-		ctrls.setLayout(new BoxLayout(ctrls, BoxLayout.X_AXIS));
-
-		fpsField = new JTextField("FPS: 0");
-		fpsField.setEditable(false);
-		ctrls.add(fpsField);
-
-		upsField = new JTextField("UPS: 0 secs");
-		upsField.setEditable(false);
-		ctrls.add(upsField);
-
-		levelField = new JTextField("Level: 1");
-		levelField.setEditable(false);
-		ctrls.add(levelField);
-
-		scoreField = new JTextField("Score: 0");
-		scoreField.setEditable(false);
-		ctrls.add(scoreField);
-
-		livesField = new JTextField("Lives: " + Constants.DEFAULT_LIVES);
-		livesField.setEditable(false);
-		ctrls.add(livesField);
-
-		alienField = new JTextField("Aliens: " + Constants.ALIEN_COLS
-				* Constants.ALIEN_ROWS);
-		alienField.setEditable(false);
-		ctrls.add(alienField);
+		statusBar = new StatusBar(); // a row of textfields
+		c.add(statusBar, "South");
 
-		c.add(ctrls, "South");
-
-		thePanel = new GamePanel(this, period);
+		thePanel = new GamePanel(this, period, bufferStrategy, timeScale,
+				replay, pacer, pipelined);
 		c.add(thePanel, "Center");
 	} // end of makeGUI()
 
 	/*
 	 * ======================================================================
-	 * setFPS Called from storeStats() in thePanel
-	 * ======================================================================
-	 */
-	public void setFPS(double fps) {
-		fpsField.setText("FPS: " + twoDP.format(fps));
-	}
-
-	/*
-	 * ======================================================================
-	 * setUPS Called from storeStats() in thePanel
+	 * getStatusBar Called by thePanel, which sets the values shown and
+	 * publishes them once per frame
 	 * ======================================================================
 	 */
-	public void setUPS(double ups) {
-		upsField.setText("UPS: " + twoDP.format(ups));
-	}
-
-	public void setLevel(int level) {
-		levelField.setText("Level: " + level);
-	}
-
-	public void setScore(int score) {
-		scoreField.setText("Score: " + score);
-	}
-
-	public void setLives(int lives) {
-		livesField.setText("Lives: " + lives);
-	}
-
-	public void setAlienCount(int alienCount) {
-		alienField.setText("Aliens: " + alienCount);
+	public StatusBar getStatusBar() {
+		return statusBar;
 	}
 
 	// ----------------- window listener methods ----------------------------
@@ -142,10 +88,12 @@ public final class GameFrame extends JFrame implements WindowListener {
 	}
 
 	public void windowDeiconified(WindowEvent e) {
+		thePanel.setIconified(false);
 		thePanel.resumeGame();
 	}
 
 	public void windowIconified(WindowEvent e) {
+		thePanel.setIconified(true);
 		thePanel.pauseGame();
 	}
 
@@ -162,14 +110,125 @@ public final class GameFrame extends JFrame implements WindowListener {
 	/*
 	 * ======================================================================
 	 * main method Takes in a requested FPS, calculates the update period in ns,
-	 * then creates a new BlankFrame instance
+	 * then creates a new BlankFrame instance. The FPS may be followed by
+	 * "bufferstrategy", to present frames with a BufferStrategy instead of
+	 * copying them from an off screen image, by a time scale such as "4x", to
+	 * run the game four times as fast as normal, by "replay=file" to play
+	 * back a recorded game instead, by "pacer=name" to choose how to wait
+	 * for the next frame, see createPacer, and by "serial" or "pipelined" to
+	 * render the frames on the animation thread or on a thread of their own.
+	 * They are pipelined by default if there is more than one processor.
 	 * ======================================================================
 	 */
 	public static void main(String args[]) {
 		int fps = DEFAULT_FPS;
+		boolean bufferStrategy = false;
+		int timeScale = 1;
+		Replay replay = null;
+		FramePacer pacer = createPacer("hybrid");
+		boolean pipelined = Runtime.getRuntime().availableProcessors() > 1;
 		if (args.length != 0)
 			fps = Integer.parseInt(args[0]);
-		new GameFrame(1000000000 / fps);
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("bufferstrategy"))
+				bufferStrategy = true;
+			else if (args[i].startsWith("replay="))
+				replay = loadReplay(args[i].substring("replay=".length()));
+			else if (args[i].equals("serial"))
+				pipelined = false;
+			else if (args[i].equals("pipelined"))
+				pipelined = true;
+			else if (args[i].startsWith("pacer="))
+				pacer = createPacer(args[i].substring("pacer=".length()));
+			else if (args[i].endsWith("x"))
+				timeScale = parseTimeScale(args[i]);
+		}
+		long period = 1000000000 / fps;
+		if (replay != null) {
+			// play the replay at the speed it was recorded at
+			period = replay.getTickLength();
+		}
+		new GameFrame(period, bufferStrategy, timeScale, replay, pacer,
+				pipelined);
 	} // end of main method
+
+	/**
+	 * Create the frame pacer given on the command line, or exit if there is
+	 * no such pacer. "sleep" sleeps until the next frame, "park" parks and
+	 * then spins, "spin" only spins, and "hybrid" sleeps, parks and spins. The
+	 * margins of the hybrid pacer, before the deadline, at which it stops
+	 * sleeping and parking can be given in microseconds, as in
+	 * "hybrid:2000:100".
+	 * 
+	 * @param name
+	 *            The name of the pacer.
+	 * @return The pacer.
+	 */
+	private static FramePacer createPacer(String name) {
+		String[] parts = name.split(":");
+		try {
+			if (name.equals("sleep"))
+				return new SleepPacer();
+			else if (name.equals("park"))
+				return new HybridPacer(name, Long.MAX_VALUE,
+						HybridPacer.DEFAULT_SPIN_MARGIN);
+			else if (name.equals("spin"))
+				return new HybridPacer(name, Long.MAX_VALUE, Long.MAX_VALUE);
+			else if (parts[0].equals("hybrid") && parts.length == 1)
+				return new HybridPacer(name, HybridPacer.DEFAULT_SLEEP_MARGIN,
+						HybridPacer.DEFAULT_SPIN_MARGIN);
+			else if (parts[0].equals("hybrid") && parts.length == 3)
+				return new HybridPacer(name,
+						Long.parseLong(parts[1]) * 1000L,
+						Long.parseLong(parts[2]) * 1000L);
+		} catch (IllegalArgumentException e) {
+			// also thrown for a margin which is not a number
+		}
+		System.err.println("Unknown pacer " + name
+				+ ", use sleep, park, spin or hybrid[:sleep:spin]");
+		System.exit(1);
+		return null;
+	}
+
+	/**
+	 * Parse the time scale given on the command line, as in "4x", or exit if
+	 * it is not a positive number.
+	 * 
+	 * @param arg
+	 *            The argument.
+	 * @return The number of game ticks per frame period.
+	 */
+	private static int parseTimeScale(String arg) {
+		try {
+			int timeScale = Integer.parseInt(arg.substring(0,
+					arg.length() - 1));
+			if (timeScale >= 1)
+				return timeScale;
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		System.err.println("Bad time scale " + arg
+				+ ", use a positive number of ticks per frame, e.g. 4x");
+		System.exit(1);
+		return 0;
+	}
+
+	/**
+	 * Load a replay given on the command line, or exit if it cannot be read.
+	 * 
+	 * @param name
+	 *            The name of the replay file.
+	 * @return The replay.
+	 */
+	private static Replay loadReplay(String name) {
+		try {
+			return Replay.load(new File(name));
+		} catch (IOException e) {
+			System.err.println("Could not read replay " + name + ": "
+					+ e.getMessage());
+			System.exit(1);
+			return null;
+		}
+	}
 } // end of BlankFrame class
 
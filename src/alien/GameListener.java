@@ -0,0 +1,61 @@
+package alien;
+
+/**
+ * The listener interface for receiving notifications from a GameSimulation.
+ * The simulation itself never touches the screen, the status bar or the sound
+ * system; anything it wants shown or heard is passed on through this
+ * interface.
+ * 
+ * @see GameAdapter
+ * @see GameSimulation
+ * @author Ole
+ */
+public interface GameListener {
+	/**
+	 * Invoked after the simulation has changed state.
+	 * 
+	 * @param state
+	 *            The new state of the simulation.
+	 */
+	public void stateChanged(GameSimulation.State state);
+
+	/**
+	 * Invoked when the simulation wants a sound to be played.
+	 * 
+	 * @param sound
+	 *            The index of the sound, as defined in Sound.
+	 */
+	public void playSound(int sound);
+
+	/**
+	 * Invoked when the level should be updated in the status bar.
+	 * 
+	 * @param level
+	 *            The current level.
+	 */
+	public void levelChanged(int level);
+
+	/**
+	 * Invoked when the score should be updated in the status bar.
+	 * 
+	 * @param score
+	 *            The current score.
+	 */
+	public void scoreChanged(int score);
+
+	/**
+	 * Invoked when the player's lives should be updated in the status bar.
+	 * 
+	 * @param lives
+	 *            The number of lives the player has left.
+	 */
+	public void livesChanged(int lives);
+
+	/**
+	 * Invoked when the alien counter should be updated in the status bar.
+	 * 
+	 * @param alienCount
+	 *            The number of aliens alive, including the special alien.
+	 */
+	public void alienCountChanged(int alienCount);
+}
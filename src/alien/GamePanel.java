@@ -4,32 +4,37 @@ package alien;
 // The game's drawing surface
 // Based on code by Andrew Davison, April 2005, ad@fivedots.coe.psu.ac.th
 
-import alien.entity.Alien;
-import alien.entity.AlienMissile;
-import alien.entity.Barricade;
-import alien.entity.BarricadePart;
-import alien.entity.Entity;
-import alien.entity.Missile;
-import alien.entity.Player;
-import alien.entity.PlayerMissile;
-import alien.entity.Rectangle;
-import alien.entity.SpecialAlien;
+import alien.GameSimulation.State;
 import alien.hiscore.Hiscore;
+import alien.hiscore.HiscoreWriter;
+import alien.hiscore.Leaderboard;
+import alien.hiscore.NameEntry;
 import alien.hiscore.Score;
 import alien.hiscore.ScoreFormatException;
-
+import alien.replay.Replay;
+import alien.replay.ReplayPlayer;
+import alien.replay.ReplayRecorder;
+import alien.stats.FrameEvent;
+import alien.stats.FrameStats;
+import alien.stats.SessionReport;
+
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 /**
@@ -46,19 +51,41 @@ public final class GamePanel extends JPanel implements Runnable {
 
 	// parent frame
 	private GameFrame theFrame;
-
-	public static final Rectangle gameScreen = new Rectangle(0, 0,
-			Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
+	// the frame's status bar, published once per frame
+	private StatusBar statusBar;
 
 	// Thread control ==========================================================
 	// the thread that performs the animation
 	private Thread animator;
-	// used to stop the animation thread
-	private boolean running = false;
+	// used to stop the animation thread; cleared by the event dispatch thread
+	private volatile boolean running = false;
 
-	// period between drawing in _nanosecs_
+	// period between drawing in _nanosecs_, which is also the length of one
+	// game tick
 	private long period;
 
+	// number of game ticks run per period, 1 for normal speed
+	private volatile int timeScale;
+
+	// the virtual clock passed to the simulation, advanced once per tick
+	private GameClock clock;
+
+	// waits for the next frame to be due
+	private FramePacer pacer;
+
+	// While the game is idle, i.e. not being played, frames are only run
+	// this often, in ns, unless the thread is woken by input. Their ticks are
+	// run together, and the frames are only rendered if something may have
+	// changed.
+	private static final long IDLE_PERIOD = 250000000L;
+	// an idle frame is redrawn at least this often, in ns, in case the
+	// screen was lost without the thread being woken
+	private static final long IDLE_REDRAW_PERIOD = 1000000000L;
+	// true while the window is iconified, when no frames are rendered at all
+	private volatile boolean iconified = false;
+	// set by wake() to render the next frame even if the game is idle
+	private final AtomicBoolean woken = new AtomicBoolean();
+
 	// Number of frames with a delay of 0 ms before the animation thread yields
 	// to other running threads.
 	private static final int NO_DELAYS_PER_YIELD = 16;
@@ -70,9 +97,60 @@ public final class GamePanel extends JPanel implements Runnable {
 	// number of FPS values stored to get an average
 	private static int NUM_FPS = 10;
 
-	// off screen rendering
-	private Graphics g;
-	private Image dbImage = null;
+	// no. of times a frame is rendered again if it is lost before it is shown
+	private static final int MAX_FRAME_REDRAWS = 3;
+
+	// where the frames are rendered and presented
+	private GameScreen screen;
+	// the component the game is drawn on, which receives key events
+	private Component surface;
+
+	// Input ==================================================================
+	// the most input events waiting for a tick
+	private static final int INPUT_QUEUE_CAPACITY = 256;
+	// The input events sent by the key and window listeners on the event
+	// dispatch thread, taken by the animation thread before each tick. Each
+	// event clears and sets GameSimulation.INPUT_ bits, see updateInput.
+	private final InputQueue inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+	// the GameSimulation.INPUT_ bits of the keys held down, animation thread
+	// only, like all the fields below
+	private int heldKeys;
+	// true if a key which moves the player or fires was pressed, and not
+	// repeated, in the current tick, and when it was created and received
+	private boolean keyPressed;
+	private long pressCreated;
+	private long pressReceived;
+	// true if a tick of the current frame has shown such a key press, whose
+	// latency is recorded once the frame is on the screen
+	private boolean pressShown;
+	private long shownCreated;
+	private long shownReceived;
+	private long shownApplied;
+
+	// Replays ================================================================
+	// directory the replays of the games played are saved in
+	private static final String REPLAY_DIR = "replays";
+	// ns skipped by each seek in a replay
+	private static final long REPLAY_SEEK_TIME = 10000000000L;
+
+	// true if a replay is played instead of a game
+	private boolean replaying;
+	// records the game being played, or null if replaying
+	private ReplayRecorder recorder;
+	// plays the replay, or null if a game is being played
+	private ReplayPlayer replayer;
+	// ticks to seek by in the replay, set by the key listener
+	private final AtomicLong replaySeek = new AtomicLong();
+	private volatile boolean replayPaused = false;
+
+	// Saved games ============================================================
+	// the game in progress, saved on exit and at the start of every level
+	private SaveGame saveGame = new SaveGame();
+	// the level at which the game was last saved
+	private int savedLevel;
+	// set by the key listener to save or load the game before the next tick
+	private volatile boolean quickSave = false;
+	private volatile boolean quickLoad = false;
 
 	// Stats ==================================================================
 	private static long MAX_STATS_INTERVAL = 1000000000L;
@@ -84,12 +162,16 @@ public final class GamePanel extends JPanel implements Runnable {
 	private long gameStartTime;
 	private int timeSpentInGame = 0; // in seconds
 
-	// number of frames which have been drawn on the Panel
-	private long frameCount = 0;
+	// number of frames which have been drawn on the Panel, counted by the
+	// thread rendering them
+	private volatile long frameCount = 0;
 	private double fpsStore[];
 	private long statsCount = 0;
 	private double averageFPS = 0.0;
 
+	// number of game ticks which have been run
+	private long updateCount = 0L;
+
 	// number of frames which have been skipped
 	private long framesSkipped = 0L;
 	private long totalFramesSkipped = 0L;
@@ -98,96 +180,84 @@ public final class GamePanel extends JPanel implements Runnable {
 
 	private static final DecimalFormat df = new DecimalFormat("0.##"); // 2 dp
 
-	// controls how often the special sound starts playing
-	private static final int SPECIAL_SOUND_MAX = 140;
-	/*
-	 * Controls how many milliseconds there should be between each time the
-	 * aliens move at the beginning of the game.
-	 */
-	private static final int START_ALIEN_MOVEMENT_DELAY = 500;
-	/*
-	 * Controls how often the last alien in each column should fire (delay in
-	 * ms).
-	 */
-	private static final int START_ALIEN_FIRE_DELAY_MIN = 200;
-	private static final int START_ALIEN_FIRE_DELAY_MAX = 5000;
-
-	// --- TIMER VARIABLES ---
-	// 
-	private double alienFireDelayMin;
-	private double alienFireDelayMax;
-	/*
-	 * Stores the amount of time between the last fired missile and when the
-	 * next one should be fired.
-	 */
-	private double[] alienFireRandom = new double[Constants.ALIEN_COLS];
-	// stores the time at which each column of aliens last fired
-	private long[] alienFireTimer = new long[Constants.ALIEN_COLS];
-	// The delay between each horizontal alien movement.
-	private double alienMovementDelay = START_ALIEN_MOVEMENT_DELAY;
-	// The time at which the aliens last moved.
-	private long alienMoveTimer;
-	// Controls that the special alien sound is played again at the right time
-	private int specialSoundCount;
-	private double alienMoveDelayMultiplier;
-	// --- SPECIAL ALIEN TIMERS ---
-	/*
-	 * The minimum amount of time between the appearance of a new special alien
-	 * after the beginning of a level or one is killed or disappears.
-	 */
-	private static final int SPECIAL_DELAY_MIN = 10000;
-	/*
-	 * The maximum amount of time between the appearance of a new special alien
-	 * after the beginning of a level or one is killed or disappears.
-	 */
-	private static final int SPECIAL_DELAY_MAX = 20000;
-	// the time at which the special alien timer started
-	private long specialTimer;
-	/*
-	 * The amount of time after the start of the special alien timer the special
-	 * alien should appear.
-	 */
-	private int specialDelay;
-
-	// keyboard input variables
-	private boolean leftPressed = false;
-	private boolean rightPressed = false;
-	private boolean spacePressed = false;
-
-	// The state at which the game is in.
-	private State state;
+	// timing histograms of the phases of each frame, published over JMX
+	private FrameStats frameStats = new FrameStats();
+	// the performance report written when the game is closed
+	private static final String REPORT_DIR = "reports";
+	private SessionReport report;
+
+	// The game itself, without any of the Swing or timing code.
+	private GameSimulation sim;
+	// Draws the game onto the screen.
+	private GameRenderer renderer;
+	// the parts of the latest frame which were rendered, or null for all
+	private DirtyRegion dirty;
+	// true if frames are rendered on their own thread, while the ticks of
+	// the next frame are run
+	private boolean pipelined;
+	// the thread rendering the frames if pipelined, and the snapshots passed
+	// to it
+	private Thread renderThread;
+	private final SnapshotBuffer snapshots = new SnapshotBuffer();
+	// the snapshot of each frame if not pipelined
+	private final FrameSnapshot snapshot = new FrameSnapshot();
+	// the time taken to render and paint the latest frame, in ns
+	private volatile long lastRenderTime;
+	private volatile long lastPaintTime;
 	// Stores the hiscores.
 	private Hiscore scores;
-	// The current score.
-	private int score;
-	// The current level.
-	private int level;
-	// the next alien move sound to be played.
-	private int alienMoveSound = Sound.MOVE1;
-
-	// visible entities
-	private Player player;
-	private Barricade[] barricades;
-	private Alien[] aliens = new Alien[Constants.ALIEN_ROWS
-			* Constants.ALIEN_COLS];
-	private ArrayList<Missile> missiles = new ArrayList<Missile>();
-	private SpecialAlien specialAlien;
+	// Saves the hiscores in the background.
+	private HiscoreWriter hiscoreWriter;
+	// The name being typed in for a new hiscore, or null. While it is set,
+	// all keys go to the name instead of the game.
+	private volatile NameEntry nameEntry;
+	// A hiscore whose name has been typed in, waiting for the animation
+	// thread to record it, or null.
+	private volatile Score finishedScore;
+	// Every score ever played, or null until it has been loaded in the
+	// background. Synchronized on itself.
+	private volatile Leaderboard leaderboard;
 
 	/*
 	 * ======================================================================
 	 * Constructor - Initialises the welcome screen.
 	 * ======================================================================
 	 */
-	public GamePanel(GameFrame inFrame, long period) {
+	public GamePanel(GameFrame inFrame, long period, boolean bufferStrategy,
+			int timeScale, Replay replay, FramePacer pacer, boolean pipelined) {
 		theFrame = inFrame;
+		this.pipelined = pipelined;
+		statusBar = inFrame.getStatusBar();
+		replaying = replay != null;
 		this.period = period;
+		report = new SessionReport(frameStats, period);
+		this.pacer = pacer;
+		frameStats.setPacer(pacer.toString());
+		setTimeScale(timeScale);
+		clock = new GameClock(period);
+		// open the sounds now rather than on the first one played in a tick
+		Sound.init();
 
 		setBackground(Color.black);
 		setPreferredSize(new Dimension(Constants.PANEL_WIDTH,
 				Constants.PANEL_HEIGHT));
 
-		setFocusable(true);
-		requestFocus(); // the JPanel now has focus, so receives key events
+		if (bufferStrategy) {
+			// draw on a canvas filling the panel, using its BufferStrategy
+			Canvas canvas = new Canvas();
+			canvas.setBackground(Color.black);
+			setLayout(new BorderLayout());
+			add(canvas, BorderLayout.CENTER);
+			screen = new BufferStrategyScreen(canvas);
+			surface = canvas;
+		} else {
+			screen = new ImageScreen(this);
+			surface = this;
+		}
+
+		// the surface now has focus, so receives key events
+		surface.setFocusable(true);
+		surface.requestFocus();
 		setupControls();
 
 		// initialise timing elements
@@ -197,28 +267,50 @@ public final class GamePanel extends JPanel implements Runnable {
 			fpsStore[i] = 0.0;
 			upsStore[i] = 0.0;
 		}
+		frameStats.register();
 
 		try {
 			scores = new Hiscore();
+			hiscoreWriter = new HiscoreWriter(scores);
+			loadLeaderboard();
 		} catch (IOException e) {
 			e.printStackTrace();
 		} catch (ScoreFormatException e) {
 			e.printStackTrace();
 		}
 
-		player = new Player((Constants.PANEL_WIDTH - Player.WIDTH) / 2,
-				Constants.PANEL_HEIGHT - Player.HEIGHT);
-		barricades = new Barricade[Constants.BARRICADE_COUNT];
-		setState(State.WELCOME_SCREEN);
+		if (replaying) {
+			try {
+				replayer = new ReplayPlayer(replay, createListener());
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+			sim = replayer.getSimulation();
+		} else {
+			sim = new GameSimulation(createListener());
+			// continue the game which was in progress when the game was
+			// last closed
+			if (saveGame.exists() && loadGame())
+				sim.pause();
+			recorder = new ReplayRecorder(sim, clock,
+					ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
+		}
+		renderer = new GameRenderer(scores);
 	}
 
 	/**
 	 * Determines what is to be done when keyboard input is received.
 	 */
 	private void setupControls() {
-		addKeyListener(new KeyAdapter() {
+		surface.addKeyListener(new KeyAdapter() {
 			public void keyPressed(KeyEvent e) {
 				int keyCode = e.getKeyCode();
+				if (nameEntry != null) {
+					nameEntryKeyPressed(e);
+					wake();
+					return;
+				}
 				// If ESC, q, end or ctrl+c is pressed. quit game.
 				if ((keyCode == KeyEvent.VK_ESCAPE)
 						|| (keyCode == KeyEvent.VK_Q)
@@ -226,22 +318,37 @@ public final class GamePanel extends JPanel implements Runnable {
 						|| ((keyCode == KeyEvent.VK_C) && e.isControlDown())) {
 					// quit game
 					running = false;
+				} else if (replaying) {
+					replayKeyPressed(keyCode);
 				} else if (keyCode == KeyEvent.VK_P
 						|| keyCode == KeyEvent.VK_PAUSE) {
 					// pause/resume game
-					if (state == State.PAUSED)
-						resumeGame();
-					else if (state == State.PLAYING)
-						pauseGame();
+					updateInput(0, GameSimulation.INPUT_TOGGLE_PAUSE,
+							e.getWhen());
 				} else if (keyCode == KeyEvent.VK_SPACE) {
-					onSpacePress();
+					updateInput(0, GameSimulation.INPUT_SPACE
+							| GameSimulation.INPUT_PRESS_SPACE, e.getWhen());
 				} else if (keyCode == KeyEvent.VK_LEFT) {
-					leftPressed = true;
+					updateInput(0, GameSimulation.INPUT_LEFT, e.getWhen());
 				} else if (keyCode == KeyEvent.VK_RIGHT) {
-					rightPressed = true;
+					updateInput(0, GameSimulation.INPUT_RIGHT, e.getWhen());
 				} else if (keyCode == KeyEvent.VK_N && e.isControlDown()) {
 					// Ctrl+N starts a new game.
-					newGame();
+					updateInput(0, GameSimulation.INPUT_NEW_GAME, e.getWhen());
+				} else if (keyCode == KeyEvent.VK_F5) {
+					quickSave = true;
+				} else if (keyCode == KeyEvent.VK_F9) {
+					quickLoad = true;
+				}
+				wake();
+			}
+
+			@Override
+			public void keyTyped(KeyEvent e) {
+				NameEntry entry = nameEntry;
+				if (entry != null) {
+					entry.type(e.getKeyChar());
+					wake();
 				}
 			}
 
@@ -249,725 +356,460 @@ public final class GamePanel extends JPanel implements Runnable {
 			public void keyReleased(KeyEvent e) {
 				int keyCode = e.getKeyCode();
 				if (keyCode == KeyEvent.VK_SPACE) {
-					spacePressed = false;
+					updateInput(GameSimulation.INPUT_SPACE, 0, e.getWhen());
 				} else if (keyCode == KeyEvent.VK_LEFT) {
-					leftPressed = false;
+					updateInput(GameSimulation.INPUT_LEFT, 0, e.getWhen());
 				} else if (keyCode == KeyEvent.VK_RIGHT) {
-					rightPressed = false;
+					updateInput(GameSimulation.INPUT_RIGHT, 0, e.getWhen());
 				}
 			}
 		});
 	}
 
 	/**
-	 * Determines what should happen when space is pressed in the different
-	 * states.
-	 */
-	private void onSpacePress() {
-		switch (state) {
-		case PLAYING:
-			spacePressed = true;
-			break;
-		case LEVEL_PAUSE:
-			nextLevel();
-			break;
-		case NEW_GAME:
-			setState(State.PLAYING);
-			break;
-		case WELCOME_SCREEN:
-		case GAME_OVER:
-			newGame();
-		}
-	}
-
-	/**
-	 * Start a new game.
-	 */
-	private void newGame() {
-		player.reset();
-		score = 0;
-		level = 0;
-		resetFireDelay();
-		nextLevel();
-		updateAlienCounter();
-		if (state != State.PLAYING)
-			setState(State.NEW_GAME);
-	}
-
-	/**
-	 * Go to next level.
+	 * Determines what is to be done when a key is pressed while a hiscore name
+	 * is typed in: enter adds the hiscore, escape skips it and backspace
+	 * deletes the last character. The characters themselves arrive as typed
+	 * keys.
+	 * 
+	 * @param e
+	 *            The key event.
 	 */
-	private void nextLevel() {
-		level++;
-		updateLevel();
-		updateScore();
-		alienMovementDelay = START_ALIEN_MOVEMENT_DELAY;
-		alienMoveDelayMultiplier = 1 - level / 400D;
-		setupEntities();
-		decreaseFireDelay();
-		if (state == State.LEVEL_PAUSE) {
-			player.gainLife();
-			setState(State.PLAYING);
+	private void nameEntryKeyPressed(KeyEvent e) {
+		int keyCode = e.getKeyCode();
+		if (keyCode == KeyEvent.VK_C && e.isControlDown()) {
+			running = false;
+		} else if (keyCode == KeyEvent.VK_ENTER) {
+			if (nameEntry.getName().length() > 0)
+				finishNameEntry(true);
+		} else if (keyCode == KeyEvent.VK_ESCAPE) {
+			finishNameEntry(false);
+		} else if (keyCode == KeyEvent.VK_BACK_SPACE) {
+			nameEntry.backspace();
 		}
-		updateLives();
 	}
 
 	/**
-	 * Decrease the maximum amount of time in which an alien waits before firing
-	 * again.
-	 */
-	private void decreaseFireDelay() {
-		alienFireDelayMax *= 0.95;
-	}
-
-	/**
-	 * Reset the randomisation variables of the delay between each time each
-	 * alien column fires.
+	 * Stop typing in a hiscore name.
+	 * 
+	 * @param add
+	 *            true to add the hiscore with the name typed in, false to add
+	 *            it without a name.
 	 */
-	private void resetFireDelay() {
-		// currently never changed, but may want to in the future.
-		alienFireDelayMin = START_ALIEN_FIRE_DELAY_MIN;
-		alienFireDelayMax = START_ALIEN_FIRE_DELAY_MAX;
+	private void finishNameEntry(boolean add) {
+		NameEntry entry = nameEntry;
+		// a skipped hiscore is still kept, without a name; the hiscores are
+		// only changed by the animation thread, see recordFinishedScore()
+		finishedScore = new Score(add ? entry.getName() : "", entry
+				.getScore());
+		nameEntry = null;
+		renderer.setNameEntry(null);
 	}
 
 	/**
-	 * Randomise the aliens' fire timer and and the amount of time until the
-	 * next time they fire. The fire timer starts when an alien fires.
+	 * Determines what is to be done when a key is pressed while a replay is
+	 * played: the arrow keys seek back and forward, and space or p pauses
+	 * the replay.
+	 * 
+	 * @param keyCode
+	 *            The code of the key pressed.
 	 */
-	private void randomizeFireDelay() {
-		for (int i = 0; i < Constants.ALIEN_COLS; i++) {
-			alienFireTimer[i] = System.currentTimeMillis();
-			alienFireRandom[i] = Random.generate(alienFireDelayMin,
-					alienFireDelayMax);
+	private void replayKeyPressed(int keyCode) {
+		if (keyCode == KeyEvent.VK_LEFT) {
+			replaySeek.addAndGet(-REPLAY_SEEK_TIME / period);
+		} else if (keyCode == KeyEvent.VK_RIGHT) {
+			replaySeek.addAndGet(REPLAY_SEEK_TIME / period);
+		} else if (keyCode == KeyEvent.VK_SPACE || keyCode == KeyEvent.VK_P
+				|| keyCode == KeyEvent.VK_PAUSE) {
+			replayPaused = !replayPaused;
 		}
 	}
 
 	/**
-	 * Reset the special alien so that it appears in SPECIAL_DELAY_MIN to
-	 * SPECIAL_DELAY_MAX milliseconds after the method call.
-	 */
-	private void resetSpecialAlien() {
-		if (specialAlien != null)
-			specialAlien = null;
-		specialDelay = Random.generate(SPECIAL_DELAY_MIN, SPECIAL_DELAY_MAX);
-		specialTimer = System.currentTimeMillis();
-	}
-
-	/**
-	 * Update the level in the status bar.
-	 */
-	private void updateLevel() {
-		theFrame.setLevel(level);
-	}
-
-	/**
-	 * Update the score in the status bar.
-	 */
-	private void updateScore() {
-		theFrame.setScore(score);
-	}
-
-	/**
-	 * Update the lives of the player in the status bar.
+	 * Send an input event to the animation thread, to be applied by the tick
+	 * during which it was received. Must only be called on the event dispatch
+	 * thread. The event is dropped if the animation thread has fallen so far
+	 * behind that the input queue is full.
+	 * 
+	 * @param clear
+	 *            The GameSimulation.INPUT_ bits of the keys released.
+	 * @param set
+	 *            The GameSimulation.INPUT_ bits of the keys pressed and the
+	 *            events.
+	 * @param when
+	 *            When the event was created, in milliseconds since the epoch,
+	 *            as given by KeyEvent.getWhen().
 	 */
-	private void updateLives() {
-		theFrame.setLives(player.getLives());
+	private void updateInput(int clear, int set, long when) {
+		long received = System.nanoTime();
+		long created = received
+				- Math.max(0, System.currentTimeMillis() - when) * 1000000L;
+		inputQueue.offer(clear << 16 | set, received, created);
+		wake();
 	}
 
 	/**
-	 * Set up the entities on the screen in preparation for a new level.
+	 * Wake the animation thread if it is idle, and have it render the next
+	 * frame. Called after anything which may change what is shown.
 	 */
-	private void setupEntities() {
-		missiles.clear();
-		addBarricades();
-		addAliens();
+	private void wake() {
+		woken.set(true);
+		LockSupport.unpark(animator);
 	}
 
 	/**
-	 * Add new barricades to the game.
+	 * Determines whether the game is idle: while it is not being played,
+	 * nothing moves until a key is pressed.
+	 * 
+	 * @return true if the game is idle.
 	 */
-	private void addBarricades() {
-		int x = 30;
-		for (int i = 0; i < barricades.length; i++) {
-			Barricade bar = new Barricade(x, Constants.BARRICADE_AREA_Y);
-			barricades[i] = bar;
-			x += 125;
-		}
+	private boolean isIdle() {
+		return !replaying && sim.getState() != State.PLAYING;
 	}
 
 	/**
-	 * Add aliens to the screen.
+	 * Take the input of the next tick from the input queue. A key which was
+	 * pressed during the tick is held down for it, even if it was released
+	 * again before the tick, so no key press is lost.
+	 * 
+	 * @param deadline
+	 *            The time the tick ends at: only the events received before it
+	 *            are taken, or all of them if Long.MAX_VALUE.
+	 * @return The GameSimulation.INPUT_ bits of the tick.
 	 */
-	private void addAliens() {
-		int x;
-		int y = 30;
-		for (int row = 0; row < Constants.ALIEN_ROWS; row++) {
-			x = 30;
-			for (int col = 0; col < Constants.ALIEN_COLS; col++) {
-				aliens[row * Constants.ALIEN_COLS + col] = new Alien(x, y);
-				x += 50;
+	private int takeInput(long deadline) {
+		int pressed = 0;
+		keyPressed = false;
+		int event;
+		while ((event = inputQueue.poll(deadline)) != 0) {
+			int clear = event >>> 16;
+			int set = event & 0xffff;
+			// a key already held down is a repeat
+			if (!keyPressed
+					&& (set & GameSimulation.INPUT_HELD_KEYS & ~heldKeys) != 0) {
+				keyPressed = true;
+				pressCreated = inputQueue.getPolledCreated();
+				pressReceived = inputQueue.getPolledReceived();
 			}
-			y += 40;
+			heldKeys = (heldKeys & ~clear)
+					| (set & GameSimulation.INPUT_HELD_KEYS);
+			pressed |= set;
 		}
+		return heldKeys | pressed;
 	}
-
-	/*
-	 * ======================================================================
-	 * gameUpdate The objects in the game are each updated.
-	 * ======================================================================
+	/**
+	 * Determines how sounds, status bar updates and state changes from the
+	 * simulation are displayed.
+	 * 
+	 * @return A listener to be passed to the simulation.
 	 */
-	private void gameUpdate() {
-		if (state == State.PLAYING) {
-			if (timeForAlienMovement()) {
-				Alien.changeAnimation();
-				if (wrongAlienDirection()) {
-					moveAliensDown();
-					if (alienInBarricadeArea()) {
-						setState(State.GAME_OVER);
-					} else {
-						Alien.changeDirection();
-					}
-				} else {
-					moveAliens();
-				}
-				if (getAlienCount() > 0) {
-					Sound.play(alienMoveSound);
-					nextAlienSound();
+	private GameListener createListener() {
+		return new GameAdapter() {
+			public void stateChanged(State state) {
+				if (state == State.GAME_OVER && !replaying) {
+					// the next game is saved from its first level
+					savedLevel = 0;
+					addHiscore();
 				}
-				alienMoveTimer = System.currentTimeMillis();
 			}
-			if (timeForSpecialAlien()) {
-				specialAlien = new SpecialAlien();
-			}
-			if (specialAlien != null) {
-				specialAlien.move();
-				if (specialSoundCount == 0)
-					Sound.play(Sound.UFOLOW);
-				specialSoundCount = ++specialSoundCount % SPECIAL_SOUND_MAX;
-			}
-			alienFire();
-			moveMissiles();
-			deleteOutOfScreenEntities();
-			processCollisions();
-			processPressedKeys();
-			updateScore();
-
-			updateAlienCounter();
-		}
-	} // end of gameUpdate()
 
-	/**
-	 * Get the alienCount and update the alien counter in the status bar
-	 * accordingly. This counter includes the special alien.
-	 */
-	private void updateAlienCounter() {
-		int alienCount = getAlienCount();
-		if (specialAlien != null)
-			alienCount++;
-		else if (alienCount == 0) {
-			setState(State.LEVEL_PAUSE);
-		}
-		theFrame.setAlienCount(alienCount);
-	}
+			public void playSound(int sound) {
+				Sound.play(sound);
+			}
 
-	/**
-	 * Returns the number of aliens which are alive, not including the special
-	 * alien.
-	 * 
-	 * @return The number of aliens alive.
-	 */
-	private int getAlienCount() {
-		int alienCount = 0;
-		for (Alien alien : aliens) {
-			if (alien != null)
-				alienCount++;
-		}
-		return alienCount;
-	}
+			public void levelChanged(int level) {
+				statusBar.setLevel(level);
+			}
 
-	/**
-	 * Determines if it is time for the aliens to make another horizontal move.
-	 * 
-	 * @return true is it is time for the aliens to make a move, false
-	 *         otherwise.
-	 */
-	private boolean timeForAlienMovement() {
-		return System.currentTimeMillis() - alienMoveTimer > alienMovementDelay;
-	}
+			public void scoreChanged(int score) {
+				statusBar.setScore(score);
+			}
 
-	/**
-	 * Determines if it is time for a new special alien to appear.
-	 * 
-	 * @return True if is it time for a special alien to appear, false
-	 *         otherwise.
-	 */
-	private boolean timeForSpecialAlien() {
-		return specialAlien == null
-				&& System.currentTimeMillis() - specialTimer > specialDelay;
-	}
+			public void livesChanged(int lives) {
+				statusBar.setLives(lives);
+			}
 
-	/**
-	 * Determines if the aliens are facing in the wrong direction and should
-	 * move in the opposite direction of what they are.
-	 * 
-	 * @return true if the first living alien in any column is facing the wrong
-	 *         direction, false otherwise.
-	 */
-	private boolean wrongAlienDirection() {
-		for (int col = 0; col < Constants.ALIEN_COLS; col++) {
-			for (int row = 0; row < Constants.ALIEN_ROWS; row++) {
-				Alien alien = aliens[row * Constants.ALIEN_COLS + col];
-				if (alien != null) {
-					if (alien.facingWrongDirection()) {
-						return true;
-					}
-					break;
-				}
+			public void alienCountChanged(int alienCount) {
+				statusBar.setAlienCount(alienCount);
 			}
-		}
-		return false;
+		};
 	}
 
 	/**
-	 * Determines if the lowest row of living aliens have entered the barricade
-	 * area.
-	 * 
-	 * @return true if the lowest row of living aliens have entered barricade
-	 *         area, false otherwise.
+	 * Start typing in a name for the score of the game which has just ended,
+	 * if it is eligible for the hiscores. The name is typed in on the game
+	 * over screen, so the animation loop keeps running, and the hiscores are
+	 * saved in the background once it has been entered. Any other score is
+	 * kept without a name.
 	 */
-	private boolean alienInBarricadeArea() {
-		for (int row = Constants.ALIEN_ROWS - 1; row >= 0; row--) {
-			for (int col = 0; col < Constants.ALIEN_COLS; col++) {
-				Alien alien = aliens[row * Constants.ALIEN_COLS + col];
-				// alien is dead, continue searching row.
-				if (alien == null)
-					continue;
-				if (alien.inBarricadeArea())
-					return true;
-				/*
-				 * If there are living aliens in the lowest row which are not in
-				 * the barricade area.
-				 */
-				return false;
+	private void addHiscore() {
+		int score = sim.getScore();
+		if (scores == null)
+			return;
+		String rank = null;
+		if (scores.getGameCount() > 0)
+			rank = "You beat " + (int) (scores.beaten(score) * 100)
+					+ "% of all games";
+		Leaderboard board = leaderboard;
+		if (board != null) {
+			synchronized (board) {
+				rank = (rank == null ? "" : rank + ", ") + "rank "
+						+ board.rank(score) + " of " + (board.size() + 1);
 			}
 		}
-		return false;
-	}
-
-	/**
-	 * Make all the aliens move down.
-	 */
-	private void moveAliensDown() {
-		for (Alien alien : aliens) {
-			if (alien != null)
-				alien.moveDown();
+		renderer.setRank(rank);
+		scores.addGame(score, sim.getLevel());
+		if (!scores.eligible(score)) {
+			recordScore("", score);
+			return;
 		}
+		nameEntry = new NameEntry(score);
+		renderer.setNameEntry(nameEntry);
 	}
 
 	/**
-	 * Go through and check if it is time for the last alien in each of the
-	 * columns to fire, and it is, make them.
+	 * Record the hiscore whose name has been typed in, if any. Must be called
+	 * by the animation thread.
 	 */
-	private void alienFire() {
-		for (int col = 0; col < Constants.ALIEN_COLS; col++) {
-			boolean timeToFire = timeToFire(col);
-			if (!timeToFire)
-				continue;
-			for (int row = Constants.ALIEN_ROWS - 1; row >= 0; row--) {
-				Alien alien = aliens[row * Constants.ALIEN_COLS + col];
-				// If the alien is dead, continue to the alien above it
-				if (alien != null) {
-					missiles.add(alien.fire());
-					break;
-				}
-			}
-			resetAlienColumnFireTimer(col);
+	private void recordFinishedScore() {
+		Score score = finishedScore;
+		if (score != null) {
+			finishedScore = null;
+			recordScore(score.getName(), score.getScore());
 		}
 	}
 
 	/**
-	 * Set the current time as the time at which the selected alien column fired
-	 * and randomise the time until the next time it will fire.
+	 * Add the score of a finished game to the hiscores and the leaderboard.
+	 * Must be called by the animation thread.
 	 * 
-	 * @param col
-	 *            The column of aliens selected.
+	 * @param name
+	 *            The player's name, or an empty string if none.
+	 * @param score
+	 *            The score.
 	 */
-	private void resetAlienColumnFireTimer(int col) {
-		alienFireTimer[col] = System.currentTimeMillis();
-		alienFireRandom[col] = Random.generate(alienFireDelayMin,
-				alienFireDelayMax);
+	private void recordScore(String name, int score) {
+		scores.add(name, score);
+		saveScores();
+		Leaderboard board = leaderboard;
+		if (board != null) {
+			synchronized (board) {
+				board.add(name, score);
+			}
+		}
 	}
 
 	/**
-	 * Determine if it is time for the last alien in a column to fire.
-	 * 
-	 * @param col
-	 *            The column of aliens selected.
-	 * @return true if it is time for the last alien in a column to fire.
+	 * Load the leaderboard in the background, as it holds every score ever
+	 * played.
 	 */
-	private boolean timeToFire(int col) {
-		return System.currentTimeMillis() - alienFireTimer[col] > alienFireRandom[col];
+	private void loadLeaderboard() {
+		Thread loader = new Thread("Leaderboard loader") {
+			public void run() {
+				try {
+					leaderboard = scores.loadLeaderboard();
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (ScoreFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		loader.setDaemon(true);
+		loader.start();
 	}
 
-	/**
-	 * Delete any out of screen entities, including missiles and special aliens.
+	/*
+	 * ======================================================================
+	 * gameUpdate The objects in the game are each updated, one tick later on
+	 * the virtual clock.
+	 * ======================================================================
 	 */
-	private void deleteOutOfScreenEntities() {
-		for (int i = 0; i < missiles.size(); i++) {
-			if (!onScreen(missiles.get(i))) {
-				missiles.remove(i--);
+	private void gameUpdate(long deadline) {
+		if (replaying) {
+			updateReplay();
+		} else {
+			if (quickSave) {
+				quickSave = false;
+				saveGame();
 			}
+			if (quickLoad) {
+				quickLoad = false;
+				quickLoad();
+			}
+			recordFinishedScore();
+			int bits = takeInput(deadline);
+			int playerX = sim.getPlayer().getX();
+			int playerMissiles = sim.getMissiles().getPlayerMissileCount();
+			recorder.record(bits);
+			sim.input(bits);
+			clock.tick(sim);
+			// a key press is shown if the player moved or fired
+			if (keyPressed
+					&& !pressShown
+					&& (sim.getPlayer().getX() != playerX || sim.getMissiles()
+							.getPlayerMissileCount() > playerMissiles)) {
+				pressShown = true;
+				shownCreated = pressCreated;
+				shownReceived = pressReceived;
+				shownApplied = System.nanoTime();
+			}
+			// autosave at the start of every level
+			if (sim.getState() == State.PLAYING && sim.getLevel() != savedLevel)
+				saveGame();
 		}
-		if (specialAlien != null && !onScreen(specialAlien)) {
-			resetSpecialAlien();
-		}
-	}
-
-	/**
-	 * Determines whether or not an entity is on the screen.
-	 * 
-	 * @param entity
-	 *            An entity.
-	 * @return true if any part of the entity is on the screen, false otherwise.
-	 */
-	private boolean onScreen(Entity entity) {
-		return entity != null && entity.intersects(gameScreen);
-	}
+		updateCount++;
+	} // end of gameUpdate()
 
 	/**
-	 * Process keys which are pressed.
+	 * Save the game in progress. There is nothing to save on the welcome
+	 * screen or after the game is over.
 	 */
-	private void processPressedKeys() {
-		if (state != State.PLAYING)
+	private void saveGame() {
+		if (sim.getState() == State.WELCOME_SCREEN
+				|| sim.getState() == State.GAME_OVER)
 			return;
-		if (rightPressed) {
-			if (!leftPressed)
-				player.moveRight();
-		} else if (leftPressed) {
-			player.moveLeft();
-		}
-		if (spacePressed && getPlayerMissileCount() == 0) {
-			missiles.add(player.fire());
+		try {
+			saveGame.save(sim, clock);
+			savedLevel = sim.getLevel();
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * Get number of player missiles on the screen.
+	 * Load the saved game, and the clock it was saved with.
 	 * 
-	 * @return true if a player missile is on the screen, false otherwise.
+	 * @return true if the game was loaded, false if it could not be read, in
+	 *         which case the current game is left as it was.
 	 */
-	private int getPlayerMissileCount() {
-		int count = 0;
-		for (Missile mis : missiles)
-			if (mis instanceof PlayerMissile)
-				count++;
-		return count;
-	}
-
-	/**
-	 * Process collisions.
-	 */
-	private void processCollisions() {
-		// process alienMissile collisions
-		for (int misCount = 0; misCount < missiles.size(); misCount++) {
-			Missile mis = missiles.get(misCount);
-			if (player.collidedWith(mis)) {
-				missiles.remove(misCount--);
-				Sound.play(Sound.BOOM);
-				player.die();
-				if (!player.isAlive()) {
-					setState(State.GAME_OVER);
-				}
-				updateLives();
-			} else if (barricadeCollisionWith(mis)) {
-				missiles.remove(misCount--);
-				break;
-			} else if (mis instanceof PlayerMissile && alienCollisionWith(mis)) {
-				alienMovementDelay *= alienMoveDelayMultiplier;
-				score += Constants.ALIEN_POINTS;
-				Sound.play(Sound.KILL);
-				missiles.remove(misCount--);
-			} else if (specialAlien != null && specialAlien.collidedWith(mis)) {
-				score += getSpecialAlienPoints();
-				Sound.play(Sound.KILL);
-				missiles.remove(misCount--);
-				resetSpecialAlien();
-			}
+	private boolean loadGame() {
+		try {
+			clock = saveGame.load(sim, period);
+			savedLevel = sim.getLevel();
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
 		}
 	}
 
 	/**
-	 * Returns the number of points rewarded for killing the special alien at
-	 * this time. This number is ten times the number of aliens that have been
-	 * killed.
-	 * 
-	 * @return 10 * aliens killed
+	 * Load the saved game in the middle of a session. The replay recorded so
+	 * far is saved, and a new one is started from the loaded game, as the
+	 * jump cannot be replayed from the inputs.
 	 */
-	private int getSpecialAlienPoints() {
-		return (Constants.ALIEN_ROWS * Constants.ALIEN_COLS - getAlienCount())
-				* Constants.SPECIAL_ALIEN_POINT_MULTIPLIER;
-	}
-
-	/**
-	 * Determines whether a missile has collided with any of the barricades and
-	 * degrades any barricade-part accordingly.
-	 * 
-	 * @param mis
-	 *            A missile.
-	 * @return true is the missile has collided with a barricade, false
-	 *         otherwise.
-	 */
-	private boolean barricadeCollisionWith(Missile mis) {
-		for (Barricade barricade : barricades) {
-			for (int i = 0; i < barricade.size(); i++) {
-				BarricadePart part = barricade.getPart(i);
-				if (part.collidedWith(mis)) {
-					if (mis instanceof AlienMissile) {
-						part.degradeAbove();
-					} else if (mis instanceof PlayerMissile) {
-						part.degradeBelow();
-					}
-					return true;
-				}
-			}
+	private void quickLoad() {
+		if (!saveGame.exists())
+			return;
+		saveReplay();
+		if (loadGame()) {
+			renderer.invalidate();
+			recorder = new ReplayRecorder(sim, clock,
+					ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
 		}
-		return false;
 	}
 
 	/**
-	 * Determines whether a missile has collided with any of the aliens and an
-	 * alien accordingly.
-	 * 
-	 * @param mis
-	 *            A missile.
-	 * @return true is the missile has collided with an alien, false otherwise.
+	 * Play the next tick of the replay, after seeking if asked to.
 	 */
-	private boolean alienCollisionWith(Missile mis) {
-		for (int i = 0; i < aliens.length; i++) {
-			Alien alien = aliens[i];
-			if (alien != null && alien.collidedWith(mis)) {
-				aliens[i] = null;
-				return true;
+	private void updateReplay() {
+		long seek = replaySeek.getAndSet(0L);
+		if (seek != 0L) {
+			try {
+				replayer.seek(replayer.getTick() + seek);
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
+			renderer.invalidate();
 		}
-		return false;
+		if (!replayPaused)
+			replayer.step();
 	}
 
 	/**
-	 * Move all the missiles on the screen.
+	 * Capture the next frame and have it rendered: on the render thread if
+	 * pipelined, otherwise at once.
 	 */
-	private void moveMissiles() {
-		for (Missile m : missiles) {
-			m.move();
+	private void captureFrame() {
+		FrameSnapshot frame = snapshot;
+		int index = 0;
+		if (pipelined) {
+			index = snapshots.acquire();
+			frame = snapshots.get(index);
 		}
+		frame.capture(sim);
+		if (pressShown)
+			frame.setPressShown(shownCreated, shownReceived, shownApplied);
+		if (pipelined)
+			snapshots.publish(index);
+		else
+			renderFrame(frame);
 	}
 
 	/**
-	 * Move all the aliens on the screen.
+	 * Render the snapshots captured by the animation thread, until the game
+	 * is over. Run by the render thread if pipelined.
 	 */
-	private void moveAliens() {
-		for (Alien alien : aliens) {
-			if (alien != null) {
-				alien.move();
-			}
+	private void renderLoop() {
+		int index;
+		while ((index = snapshots.take()) >= 0) {
+			renderFrame(snapshots.get(index));
+			snapshots.release();
 		}
 	}
 
 	/**
-	 * Choose the next alien sound to be played.
+	 * Render a frame and put it on the screen.
+	 * 
+	 * @param frame
+	 *            The frame.
 	 */
-	private void nextAlienSound() {
-		alienMoveSound++;
-		if (alienMoveSound > Sound.MOVE4) {
-			alienMoveSound = Sound.MOVE1;
-		}
+	private void renderFrame(FrameSnapshot frame) {
+		long renderStart = System.nanoTime();
+		gameRender(frame);
+		long paintStart = System.nanoTime();
+		frameStats.recordRender(paintStart - renderStart);
+		paintScreen(frame);
+		long paintEnd = System.nanoTime();
+		frameStats.recordPaint(paintEnd - paintStart);
+		if (frame.isPressShown())
+			frameStats.recordInput(frame.getPressCreated(), frame
+					.getPressReceived(), frame.getPressApplied(), paintEnd);
+		frameStats.endRender();
+		lastRenderTime = paintStart - renderStart;
+		lastPaintTime = paintEnd - paintStart;
+		frameCount++;
 	}
 
 	/*
 	 * ======================================================================
-	 * gameRender: Render the game objects onto dbImage
+	 * gameRender: Render a frame onto the screen's back buffer
 	 * ======================================================================
 	 */
-	private void gameRender() {
-		if (dbImage == null) {
-			dbImage = createImage(Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
-			if (dbImage == null) {
-				System.out.println("dbImage is null");
-				return;
-			} else
-				g = dbImage.getGraphics();
-		}
-
-		// clear the background
-		g.setColor(Color.black);
-		g.fillRect(0, 0, Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
-
-		// if not on welcome screen, draw entities
-		if (state != State.WELCOME_SCREEN)
-			drawEntities();
-		// if not playing, draw a see-through rectangle
-		if (state != State.PLAYING) {
-			// draw a
-			g.setColor(Constants.PAUSE_BACKGROUND_COLOR);
-			g.fillRect(0, 0, Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
-		}
-		// set the text color
-		g.setColor(Constants.TEXT_COLOR);
-		switch (state) {
-		case WELCOME_SCREEN:
-			drawStartingScreen();
-			break;
-		case LEVEL_PAUSE:
-			drawLevelPause();
-			break;
-		case PAUSED:
-			drawPauseScreen();
-			break;
-		case GAME_OVER:
-			drawGameOver();
-			break;
-		case NEW_GAME:
-			drawNewGameScreen();
-			break;
+	private void gameRender(FrameSnapshot frame) {
+		Graphics g = screen.getDrawGraphics();
+		if (g == null)
+			return;
+		if (screen.isPersistent()) {
+			// only redraw what has changed since the previous frame
+			dirty = renderer.renderDirty(g, frame);
+		} else {
+			renderer.render(g, frame);
+			dirty = null;
 		}
-
 	} // end of gameRender()
 
-	/**
-	 * Get the y-coordinate of the location in which a text must be drawn to be
-	 * in the center of the screen.
-	 * 
-	 * @return The y-coordinate.
-	 */
-	private int getCenteredStringY() {
-		FontMetrics met = g.getFontMetrics();
-		return (Constants.PANEL_HEIGHT - met.getHeight()) / 2;
-	}
-
-	/**
-	 * Draw the starting screen.
-	 */
-	private void drawStartingScreen() {
-		int y = getCenteredStringY() - 10;
-		g.setFont(Constants.BIG_FONT);
-		drawCenteredString(Constants.GAME_NAME_UPPERCASE, y);
-		y += 40;
-		g.setFont(Constants.NORMAL_FONT);
-		drawCenteredString("Press SPACE to start a new game", y);
-	}
-
-	/**
-	 * Draw the text which should be displayed when a new game has been created,
-	 * but not started.
-	 */
-	private void drawNewGameScreen() {
-		int y = getCenteredStringY() - 10;
-		drawCenteredString("Are you ready!?", y);
-		y += 20;
-		drawCenteredString("Press SPACE to start", y);
-	}
-
-	/**
-	 * Draw a centred string.
-	 * 
-	 * @param str
-	 *            A string.
-	 * @param y
-	 *            The y-coordinate from which the string is to be drawn.
-	 */
-	private void drawCenteredString(String str, int y) {
-		FontMetrics met = g.getFontMetrics();
-		int x = (Constants.PANEL_WIDTH - met.stringWidth(str)) / 2;
-		g.drawString(str, x, y);
-	}
-
-	/**
-	 * Draw text which is to be displayed at the end of a game, when the player
-	 * has lost.
-	 */
-	private void drawGameOver() {
-		drawHiscores();
-		int y = getCenteredStringY() - 10;
-		drawCenteredString("GAME OVER", y);
-		y += 20;
-		drawCenteredString("Press SPACE for new game", y);
-	}
-
-	/**
-	 * Draw the text which is to be displayed when a level has been completed
-	 * successfully.
-	 */
-	private void drawLevelPause() {
-		int y = getCenteredStringY() - 10;
-		drawCenteredString("Level Clear!", y);
-		y += 20;
-		drawCenteredString("Press SPACE to continue", y);
-	}
-
-	/**
-	 * Draw the text which is to be displayed when the game is paused. This
-	 * includes instructions on how to play.
-	 */
-	private void drawPauseScreen() {
-		int y = getCenteredStringY() - 70;
-		drawCenteredString("PAUSED", y);
-		y += 30;
-		drawCenteredString("Controls", y);
-		y += 20;
-		drawCenteredString("Move left: Left arrow", y);
-		y += 20;
-		drawCenteredString("Move right: Right arrow", y);
-		y += 20;
-		drawCenteredString("Space bar: Shoot", y);
-		y += 20;
-		drawCenteredString("Resume game: P", y);
-	}
-
-	/**
-	 * Draw hiscores onto the game panel.
-	 * 
-	 */
-	private void drawHiscores() {
-		int x = 30;
-		int y = 30;
-		g.drawString("Hiscores", x, y);
-		y += 30;
-		for (int i = 0; i < scores.length(); i++) {
-			Score score = scores.getScore(i);
-			if (score == null) {
-				int pos = i + 1;
-				String posStr = Integer.toString(pos) + ": ";
-				if (pos != 10)
-					posStr = '0' + posStr;
-				g.drawString(posStr, x, y);
-			} else {
-				g.drawString((i + 1) + ": " + score.getName(), x, y);
-				String scoreStr = Integer.toString(score.getScore());
-				g.drawString(scoreStr, x + 60, y);
-			}
-			y += 30;
-		}
-	}
-
-	/**
-	 * Draw entities onto the screen. These include aliens, missiles,
-	 * barricades, the player and occasionally a special alien.
-	 * 
+	/*
+	 * ======================================================================
+	 * paintComponent: called when Swing repaints the panel, e.g. when the
+	 * window has been covered, in which case the next frame is shown in full
+	 * ======================================================================
 	 */
-	private void drawEntities() {
-		for (Alien alien : aliens) {
-			if (alien != null)
-				alien.draw(g);
-		}
-		for (Missile m : missiles) {
-			m.draw(g);
-		}
-		for (Barricade bar : barricades) {
-			bar.draw(g);
-		}
-		player.draw(g);
-		if (specialAlien != null)
-			specialAlien.draw(g);
+	public void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		screen.exposed();
+		wake();
 	}
 
 	/*
@@ -998,24 +840,41 @@ public final class GamePanel extends JPanel implements Runnable {
 
 	// called when the JFrame is activated / deiconified
 	public void resumeGame() {
-		if (state == State.PAUSED || state == State.NEW_GAME) {
-			setState(State.PLAYING);
-		}
+		updateInput(0, GameSimulation.INPUT_RESUME, System.currentTimeMillis());
 	}
 
-	// called when the JFrame is deactivated / iconified
+	// called when the JFrame is deactivated / iconified; any keys held down
+	// are released
 	public void pauseGame() {
-		if (state == State.PLAYING) {
-			setState(State.PAUSED);
-			spacePressed = false;
-			leftPressed = false;
-			rightPressed = false;
-		}
+		updateInput(GameSimulation.INPUT_HELD_KEYS, GameSimulation.INPUT_PAUSE,
+				System.currentTimeMillis());
 	}
 
 	// called when the JFrame is closing
 	public void stopGame() {
 		running = false;
+		wake();
+	}
+
+	// called when the JFrame is iconified or deiconified; nothing is
+	// rendered while it is iconified
+	public void setIconified(boolean iconified) {
+		this.iconified = iconified;
+		wake();
+	}
+
+	/**
+	 * Set how fast the game runs compared to real time.
+	 * 
+	 * @param timeScale
+	 *            The number of game ticks run per frame period, 1 for normal
+	 *            speed.
+	 */
+	public void setTimeScale(int timeScale) {
+		if (timeScale < 1)
+			throw new IllegalArgumentException("Time scale must be positive: "
+					+ timeScale);
+		this.timeScale = timeScale;
 	}
 
 	// ----------------------------------------------------------------------
@@ -1024,88 +883,200 @@ public final class GamePanel extends JPanel implements Runnable {
 	 * ======================================================================
 	 * run: Required by Runnable interface. The frames of the animation are
 	 * drawn inside the while loop.
+	 * 
+	 * The real time which has passed, multiplied by the time scale, is added
+	 * to an accumulator, and a game tick is run for every period in it. The
+	 * game state is then captured in a FrameSnapshot and rendered once, on a
+	 * render thread if pipelined, while the ticks of the next frame are run.
+	 * If frame animation is taking too long,
+	 * several ticks are run before the next frame, to get the updates/sec
+	 * nearer to the required FPS. As every tick advances the virtual clock by
+	 * exactly one period, the alien and special alien timers advance with the
+	 * catch-up ticks too.
+	 * 
+	 * While the game is idle, the thread instead waits for IDLE_PERIOD or
+	 * until it is woken by input, and then runs all the ticks due at once. A
+	 * thread woken between ticks waits for the next tick as usual, so input
+	 * is shown within a period rather than an idle period.
 	 * ======================================================================
 	 */
 	public void run() {
-		long beforeTime, afterTime, timeDiff, sleepTime;
-		long overSleepTime = 0L;
+		long beforeTime, afterTime, sleepTime;
 		int noDelays = 0;
-		long excess = 0L;
+		// scaled real time which has not yet been run as game ticks, in ns
+		long accumulator = 0L;
 
 		gameStartTime = System.nanoTime();
 		prevStatsTime = gameStartTime;
 		beforeTime = gameStartTime;
+		// the start of the previous frame, or 0 before the first
+		long frameStart = 0L;
+		// true if the game was idle at the end of the previous frame
+		boolean wasIdle = false;
+		// when the latest frame was rendered
+		long renderTime = 0L;
+		report.start();
 
 		running = true;
+		if (pipelined) {
+			renderThread = new Thread("Renderer") {
+				public void run() {
+					renderLoop();
+				}
+			};
+			renderThread.start();
+		}
 
 		while (running) {
-			/*
-			 * if (isPaused) { try { afterTime = System.nanoTime(); timeDiff =
-			 * afterTime - beforeTime; sleepTime = (period - timeDiff) -
-			 * overSleepTime; Thread.sleep(sleepTime / 1000000L); } catch
-			 * (InterruptedException e) { } beforeTime = System.nanoTime();
-			 * frameCount++; continue; }
-			 */
-			gameUpdate();
-			gameRender();
-			paintScreen();
-
+			int scale = timeScale;
 			afterTime = System.nanoTime();
-			timeDiff = afterTime - beforeTime;
-			sleepTime = (period - timeDiff) - overSleepTime;
+			accumulator += (afterTime - beforeTime) * scale;
+			beforeTime = afterTime;
+
+			if (accumulator >= period) {
+				FrameEvent frameEvent = new FrameEvent();
+				frameEvent.begin();
+				// the time of a frame after an idle wait is not a frame time
+				if (frameStart != 0L && !wasIdle)
+					frameStats.recordFrame(afterTime - frameStart);
+				frameStart = afterTime;
+				/*
+				 * Run the ticks which are due, but no more than MAX_FRAME_SKIPS
+				 * more than the time scale asks for; any time beyond that is
+				 * dropped, so the game slows down instead of falling further
+				 * and further behind. After an idle wait, all the ticks of the
+				 * wait are due as well.
+				 */
+				int maxTicks = scale * (MAX_FRAME_SKIPS + 1);
+				if (wasIdle)
+					maxTicks += scale * (int) (IDLE_PERIOD / period + 1);
+				int ticks = 0;
+				long updateTime = 0L;
+				while (accumulator >= period && ticks < maxTicks) {
+					accumulator -= period;
+					/*
+					 * A catch-up tick ends where its period ends in real time,
+					 * and only takes the input received before that. The last
+					 * tick of the frame takes all the input there is, as it
+					 * is the one shown.
+					 */
+					long deadline = accumulator >= period
+							&& ticks + 1 < maxTicks ? afterTime - accumulator
+							/ scale : Long.MAX_VALUE;
+					long updateStart = System.nanoTime();
+					gameUpdate(deadline);
+					long tickTime = System.nanoTime() - updateStart;
+					frameStats.recordUpdate(tickTime);
+					updateTime += tickTime;
+					ticks++;
+				}
+				if (accumulator >= period)
+					accumulator %= period;
+				// the ticks of an idle wait are not skipped frames
+				int skipped = ticks > scale && !wasIdle ? ticks - scale : 0;
+				framesSkipped += skipped;
 
-			if (sleepTime > 0) { // some time left in this cycle
-				try {
-					Thread.sleep(sleepTime / 1000000L); // nano -> ms
-				} catch (InterruptedException ex) {
+				/*
+				 * An idle frame is only rendered if it has been woken, if the
+				 * game has just become idle, or once every IDLE_REDRAW_PERIOD,
+				 * and nothing is rendered while the window is iconified.
+				 */
+				boolean idle = isIdle();
+				boolean wakened = woken.getAndSet(false);
+				boolean render = !iconified
+						&& (!idle || !wasIdle || wakened || afterTime
+								- renderTime >= IDLE_REDRAW_PERIOD);
+				if (render) {
+					captureFrame();
+					renderTime = afterTime;
 				}
-				overSleepTime = (System.nanoTime() - afterTime) - sleepTime;
-			} else { // sleepTime <= 0; the frame took longer than the period
-				excess -= sleepTime; // store excess time value
-				overSleepTime = 0L;
-
-				if (++noDelays >= NO_DELAYS_PER_YIELD) {
-					Thread.yield(); // give another thread a chance to run
-					noDelays = 0;
+				long frameEnd = System.nanoTime();
+				pressShown = false;
+				wasIdle = idle;
+				storeStats();
+				int entities = sim.getEntityCount();
+				frameStats.endFrame(skipped, sim.getCollisionTests(), entities);
+				if (frameEvent.shouldCommit()) {
+					frameEvent.ticks = ticks;
+					frameEvent.skipped = skipped;
+					frameEvent.updateTime = updateTime;
+					frameEvent.renderTime = lastRenderTime;
+					frameEvent.paintTime = lastPaintTime;
+					frameEvent.budget = period;
+					frameEvent.overBudget = frameEnd - afterTime > period;
+					frameEvent.entities = entities;
+					frameEvent.missiles = sim.getMissiles().size();
+					frameEvent.state = sim.getState().name();
+					frameEvent.commit();
 				}
+				// show what changed in this frame's ticks
+				statusBar.publish();
 			}
 
-			beforeTime = System.nanoTime();
-
-			/*
-			 * If frame animation is taking too long, update the game state
-			 * without rendering it, to get the updates/sec nearer to the
-			 * required FPS.
-			 */
-			int skips = 0;
-			while ((excess > period) && (skips < MAX_FRAME_SKIPS)) {
-				excess -= period;
-				gameUpdate(); // update state but don't render
-				skips++;
+			// wait until the next tick is due
+			long deadline = afterTime + (period - accumulator) / scale;
+			long sleepStart = System.nanoTime();
+			sleepTime = deadline - sleepStart;
+			if (wasIdle && !woken.get()) {
+				// wait for the idle period, or until woken; once woken, the
+				// wait below runs until the next tick, whose frame shows
+				// what woke the thread
+				LockSupport.parkNanos(this, IDLE_PERIOD);
+			} else if (sleepTime > 0) { // some time left in this cycle
+				pacer.waitUntil(deadline);
+				frameStats.recordSleep(sleepTime, System.nanoTime()
+						- sleepStart);
+			} else if (++noDelays >= NO_DELAYS_PER_YIELD) {
+				// the frame took longer than the period
+				Thread.yield(); // give another thread a chance to run
+				noDelays = 0;
+			}
+		}
+		// the session is over; what follows is not part of its report
+		report.finish();
+		if (pipelined) {
+			// let the render thread finish the frame it is rendering
+			snapshots.close();
+			try {
+				renderThread.join();
+			} catch (InterruptedException e) {
 			}
-			framesSkipped += skips;
-
-			storeStats();
 		}
 
+		if (!replaying) {
+			// keep the game in progress for the next time the game is started
+			if (sim.getState() == State.WELCOME_SCREEN
+					|| sim.getState() == State.GAME_OVER)
+				saveGame.delete();
+			else
+				saveGame();
+			saveReplay();
+		}
+		// write any hiscores which have not been written yet, including one
+		// whose name was still being typed in, with as much of it as there is
+		recordFinishedScore();
+		NameEntry entry = nameEntry;
+		if (entry != null) {
+			nameEntry = null;
+			recordScore(entry.getName(), entry.getScore());
+		}
+		if (hiscoreWriter != null)
+			hiscoreWriter.close();
 		printStats();
+		saveReport();
 		System.exit(0); // so window disappears
 	} // end of run()
 
 	/*
 	 * ======================================================================
-	 * paintScreen: use active rendering to put the buffered image on-screen
+	 * paintScreen: use active rendering to put the rendered frame on-screen.
+	 * If the frame is lost before it can be shown, it is rendered again.
 	 * ======================================================================
 	 */
-	private void paintScreen() {
-		Graphics g;
-		try {
-			g = this.getGraphics();
-			if ((g != null) && (dbImage != null))
-				g.drawImage(dbImage, 0, 0, null);
-			g.dispose();
-		} catch (Exception e) {
-			System.out.println("Graphics context error: " + e);
+	private void paintScreen(FrameSnapshot frame) {
+		for (int i = 0; !screen.show(dirty) && i < MAX_FRAME_REDRAWS; i++) {
+			renderer.invalidate();
+			gameRender(frame);
 		}
 	} // end of paintScreen()
 
@@ -1128,8 +1099,7 @@ public final class GamePanel extends JPanel implements Runnable {
 	 * ======================================================================
 	 */
 	private void storeStats() {
-		frameCount++;
-		statsInterval += period;
+		statsInterval = System.nanoTime() - prevStatsTime;
 
 		// record stats every MAX_STATS_INTERVAL
 		if (statsInterval >= MAX_STATS_INTERVAL) {
@@ -1141,6 +1111,7 @@ public final class GamePanel extends JPanel implements Runnable {
 			long realElapsedTime = timeNow - prevStatsTime; // time since last
 			// stats collection
 			totalElapsedTime += realElapsedTime;
+			report.sample(frameCount, updateCount, realElapsedTime);
 
 			totalFramesSkipped += framesSkipped;
 
@@ -1148,7 +1119,7 @@ public final class GamePanel extends JPanel implements Runnable {
 			double actualUPS = 0;
 			if (totalElapsedTime > 0) {
 				actualFPS = (((double) frameCount / totalElapsedTime) * 1000000000L);
-				actualUPS = (((double) (frameCount + totalFramesSkipped) / totalElapsedTime) * 1000000000L);
+				actualUPS = (((double) updateCount / totalElapsedTime) * 1000000000L);
 			}
 
 			// store the latest FPS and UPS
@@ -1170,8 +1141,8 @@ public final class GamePanel extends JPanel implements Runnable {
 				averageFPS = totalFPS / NUM_FPS;
 				averageUPS = totalUPS / NUM_FPS;
 			}
-			theFrame.setFPS(averageFPS);
-			theFrame.setUPS(averageUPS);
+			statusBar.setFPS(averageFPS);
+			statusBar.setUPS(averageUPS);
 
 			framesSkipped = 0;
 			prevStatsTime = timeNow;
@@ -1190,59 +1161,74 @@ public final class GamePanel extends JPanel implements Runnable {
 		System.out.println("Average FPS: " + df.format(averageFPS));
 		System.out.println("Average UPS: " + df.format(averageUPS));
 		System.out.println("Time Spent: " + timeSpentInGame + " secs");
+		System.out.println("Update: " + frameStats.getUpdate());
+		System.out.println("Render: " + frameStats.getRender());
+		System.out.println("Paint: " + frameStats.getPaint());
+		System.out.println("Oversleep (" + pacer + "): "
+				+ frameStats.getOversleep());
+		System.out.println("Input latency: " + frameStats.getInputLatency());
+		if (pipelined)
+			System.out.println("Frames dropped by the renderer: "
+					+ snapshots.getDropped());
+		if (inputQueue.getDropped() > 0)
+			System.out.println("Input events dropped: "
+					+ inputQueue.getDropped());
 	} // end of printStats()
 
 	/**
-	 * Save the hiscores to the hiscore file.
+	 * Save the performance report of this session in the report directory.
 	 */
-	public void saveScores() {
+	private void saveReport() {
+		try {
+			File file = report.save(new File(REPORT_DIR));
+			System.out.println("Report saved to " + file);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Save the replay of this session in the replay directory, named after the
+	 * time the session ended.
+	 */
+	private void saveReplay() {
+		if (recorder == null)
+			return;
+		File dir = new File(REPLAY_DIR);
+		dir.mkdirs();
+		File file = new File(dir, new SimpleDateFormat("yyyyMMdd-HHmmss-SSS")
+				.format(new Date()) + ".replay");
 		try {
-			scores.save();
+			recorder.getReplay().save(file);
+			System.out.println("Replay saved to " + file);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Save the hiscores to the hiscore file, in the background.
+	 */
+	public void saveScores() {
+		if (hiscoreWriter != null)
+			hiscoreWriter.save();
+	}
+
 	/**
 	 * Get the current state of the game.
 	 * 
 	 * @return The current state of the game.
 	 */
 	public State getState() {
-		return state;
+		return sim.getState();
 	}
 
 	/**
-	 * Set the current state of the game.
+	 * Get the frame timing and input latency statistics of the game.
 	 * 
-	 * @param state
-	 *            A state.
+	 * @return The frame statistics.
 	 */
-	public void setState(State state) {
-		switch (state) {
-		case PLAYING:
-			if (specialAlien == null)
-				resetSpecialAlien();
-			randomizeFireDelay();
-			break;
-		case GAME_OVER:
-			if (scores.eligible(score)) {
-				scores.add(this, score);
-				try {
-					scores.save();
-				} catch (IOException e) {
-					JOptionPane.showMessageDialog(this,
-							"Could not save hiscore file", "Writing error",
-							JOptionPane.ERROR_MESSAGE);
-				}
-			}
-			break;
-		}
-		this.state = state;
-	}
-
-	// Enumerated type which specifies the state of the game.
-	enum State {
-		WELCOME_SCREEN, NEW_GAME, GAME_OVER, LEVEL_PAUSE, PAUSED, PLAYING
+	public FrameStats getFrameStats() {
+		return frameStats;
 	}
 } // end of BlankPanel class
@@ -0,0 +1,411 @@
+package alien;
+
+import alien.GameSimulation.State;
+import alien.entity.Alien;
+import alien.entity.Player;
+import alien.entity.SpecialAlien;
+import alien.hiscore.Hiscore;
+import alien.hiscore.NameEntry;
+import alien.hiscore.Score;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+
+/**
+ * Class used to draw a GameSimulation onto a graphics context. Split out of
+ * GamePanel so that a frame can be rendered without a window, e.g. into a
+ * BufferedImage. The renderer only draws FrameSnapshots captured from the
+ * simulation, so it can run on another thread than the game ticks.
+ * 
+ * A frame can either be rendered in full, or incrementally onto the previous
+ * frame. For the latter, the renderer remembers the bounds each entity was
+ * drawn at, and only redraws the regions where something has moved, appeared
+ * or disappeared since.
+ * 
+ * @see GamePanel
+ * @author Ole
+ */
+public final class GameRenderer {
+	// The frame being drawn.
+	private FrameSnapshot frame;
+	// The hiscores drawn on the game over screen.
+	private Hiscore scores;
+	// The name being typed in for a new hiscore, or null.
+	private volatile NameEntry nameEntry;
+	// The rank of the latest score among all scores, or null.
+	private volatile String rank;
+	// The graphics context currently being drawn to.
+	private Graphics g;
+
+	// --- INCREMENTAL RENDERING ---
+	// the parts of the screen redrawn by the latest renderDirty call
+	private DirtyRegion dirty = new DirtyRegion();
+	// the state drawn in the previous frame, or null to redraw everything
+	private State drawnState;
+	// set by invalidate(), possibly on another thread
+	private volatile boolean invalidated;
+	// the hiscore name drawn in the previous frame, or null if none was
+	private String drawnName;
+	// the rank drawn in the previous frame, or null if none was
+	private String drawnRank;
+	// the kind of entity in each slot of the previous frame, and the bounds
+	// it was drawn at
+	private int[] drawnKind = new int[FrameSnapshot.SLOTS];
+	private int[] drawnX = new int[FrameSnapshot.SLOTS];
+	private int[] drawnY = new int[FrameSnapshot.SLOTS];
+	private int[] drawnWidth = new int[FrameSnapshot.SLOTS];
+	private int[] drawnHeight = new int[FrameSnapshot.SLOTS];
+	// the number of slots in use in the previous frame
+	private int drawnSize;
+
+	/**
+	 * Create a renderer.
+	 * 
+	 * @param scores
+	 *            The hiscores to be drawn when the game is over.
+	 */
+	public GameRenderer(Hiscore scores) {
+		this.scores = scores;
+	}
+
+	/**
+	 * Make the next renderDirty call redraw the whole frame, e.g. because the
+	 * image it draws onto has been recreated. May be called on any thread.
+	 */
+	public void invalidate() {
+		invalidated = true;
+	}
+
+	/**
+	 * Set the name being typed in for a new hiscore, which is then drawn on
+	 * the game over screen instead of the new game prompt.
+	 * 
+	 * @param nameEntry
+	 *            The name entry, or null when no name is being typed in.
+	 */
+	public void setNameEntry(NameEntry nameEntry) {
+		this.nameEntry = nameEntry;
+	}
+
+	/**
+	 * Set the rank of the latest score among every score played, which is
+	 * drawn on the game over screen.
+	 * 
+	 * @param rank
+	 *            The text to be drawn, or null to draw none.
+	 */
+	public void setRank(String rank) {
+		this.rank = rank;
+	}
+
+	/*
+	 * ======================================================================
+	 * renderDirty: Render the parts of a frame which have changed since the
+	 * previous call onto the given graphics context, which must still hold
+	 * the previous frame. Each changed region is redrawn in full, clipped to
+	 * the region.
+	 * ======================================================================
+	 */
+	public DirtyRegion renderDirty(Graphics g, FrameSnapshot frame) {
+		dirty.clear();
+		if (invalidated) {
+			invalidated = false;
+			drawnState = null;
+		}
+		State state = frame.getState();
+		if (state != drawnState) {
+			dirty.addAll();
+			drawnState = state;
+		}
+		// the text screens are only redrawn in full
+		NameEntry entry = nameEntry;
+		String name = entry == null ? null : entry.getName();
+		if (name != drawnName) {
+			dirty.addAll();
+			drawnName = name;
+		}
+		String currentRank = rank;
+		if (currentRank != drawnRank) {
+			dirty.addAll();
+			drawnRank = currentRank;
+		}
+		trackEntities(frame);
+		if (dirty.isFull()) {
+			render(g, frame);
+		} else {
+			for (int i = 0; i < dirty.size(); i++) {
+				g.setClip(dirty.getX(i), dirty.getY(i), dirty.getWidth(i),
+						dirty.getHeight(i));
+				render(g, frame);
+			}
+			g.setClip(null);
+		}
+		return dirty;
+	} // end of renderDirty()
+
+	/**
+	 * Compare the kind and bounds of the entity in each slot of a frame with
+	 * those drawn in the previous frame, and add any which have changed to
+	 * the dirty region: both the old and the new bounds.
+	 * 
+	 * @param frame
+	 *            The frame about to be drawn.
+	 */
+	private void trackEntities(FrameSnapshot frame) {
+		int size = frame.size();
+		int count = Math.max(size, drawnSize);
+		for (int i = 0; i < count; i++) {
+			int kind = FrameSnapshot.NONE;
+			int x = 0;
+			int y = 0;
+			int width = 0;
+			int height = 0;
+			if (i < size) {
+				kind = frame.getKind(i);
+				x = frame.getX(i);
+				y = frame.getY(i);
+				width = frame.getWidth(i);
+				height = frame.getHeight(i);
+			}
+			if (kind == drawnKind[i] && x == drawnX[i] && y == drawnY[i]
+					&& width == drawnWidth[i] && height == drawnHeight[i])
+				continue;
+			dirty.add(drawnX[i], drawnY[i], drawnWidth[i], drawnHeight[i]);
+			dirty.add(x, y, width, height);
+			drawnKind[i] = kind;
+			drawnX[i] = x;
+			drawnY[i] = y;
+			drawnWidth[i] = width;
+			drawnHeight[i] = height;
+		}
+		drawnSize = size;
+	}
+
+	/*
+	 * ======================================================================
+	 * render: Render a frame onto the given graphics context
+	 * ======================================================================
+	 */
+	public void render(Graphics g, FrameSnapshot frame) {
+		this.g = g;
+		this.frame = frame;
+		State state = frame.getState();
+
+		// clear the background
+		g.setColor(Color.black);
+		g.fillRect(0, 0, Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
+
+		// if not on welcome screen, draw entities
+		if (state != State.WELCOME_SCREEN)
+			drawEntities();
+		// if not playing, draw a see-through rectangle
+		if (state != State.PLAYING) {
+			// draw a
+			g.setColor(Constants.PAUSE_BACKGROUND_COLOR);
+			g.fillRect(0, 0, Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
+		}
+		// set the text color
+		g.setColor(Constants.TEXT_COLOR);
+		switch (state) {
+		case WELCOME_SCREEN:
+			drawStartingScreen();
+			break;
+		case LEVEL_PAUSE:
+			drawLevelPause();
+			break;
+		case PAUSED:
+			drawPauseScreen();
+			break;
+		case GAME_OVER:
+			drawGameOver();
+			break;
+		case NEW_GAME:
+			drawNewGameScreen();
+			break;
+		}
+
+	} // end of render()
+
+	/**
+	 * Get the y-coordinate of the location in which a text must be drawn to be
+	 * in the center of the screen.
+	 * 
+	 * @return The y-coordinate.
+	 */
+	private int getCenteredStringY() {
+		FontMetrics met = g.getFontMetrics();
+		return (Constants.PANEL_HEIGHT - met.getHeight()) / 2;
+	}
+
+	/**
+	 * Draw the starting screen.
+	 */
+	private void drawStartingScreen() {
+		int y = getCenteredStringY() - 10;
+		g.setFont(Constants.BIG_FONT);
+		drawCenteredString(Constants.GAME_NAME_UPPERCASE, y);
+		y += 40;
+		g.setFont(Constants.NORMAL_FONT);
+		drawCenteredString("Press SPACE to start a new game", y);
+	}
+
+	/**
+	 * Draw the text which should be displayed when a new game has been created,
+	 * but not started.
+	 */
+	private void drawNewGameScreen() {
+		int y = getCenteredStringY() - 10;
+		drawCenteredString("Are you ready!?", y);
+		y += 20;
+		drawCenteredString("Press SPACE to start", y);
+	}
+
+	/**
+	 * Draw a centred string.
+	 * 
+	 * @param str
+	 *            A string.
+	 * @param y
+	 *            The y-coordinate from which the string is to be drawn.
+	 */
+	private void drawCenteredString(String str, int y) {
+		FontMetrics met = g.getFontMetrics();
+		int x = (Constants.PANEL_WIDTH - met.stringWidth(str)) / 2;
+		g.drawString(str, x, y);
+	}
+
+	/**
+	 * Draw text which is to be displayed at the end of a game, when the player
+	 * has lost.
+	 */
+	private void drawGameOver() {
+		drawHiscores();
+		int y = getCenteredStringY() - 10;
+		drawCenteredString("GAME OVER", y);
+		y += 20;
+		String currentRank = rank;
+		if (currentRank != null) {
+			drawCenteredString(currentRank, y);
+			y += 20;
+		}
+		NameEntry entry = nameEntry;
+		if (entry == null) {
+			drawCenteredString("Press SPACE for new game", y);
+		} else {
+			drawCenteredString("New hiscore: " + entry.getScore(), y);
+			y += 20;
+			drawCenteredString("Enter your name: " + entry.getName() + "_", y);
+			y += 20;
+			drawCenteredString("Press ENTER when done", y);
+		}
+	}
+
+	/**
+	 * Draw the text which is to be displayed when a level has been completed
+	 * successfully.
+	 */
+	private void drawLevelPause() {
+		int y = getCenteredStringY() - 10;
+		drawCenteredString("Level Clear!", y);
+		y += 20;
+		drawCenteredString("Press SPACE to continue", y);
+	}
+
+	/**
+	 * Draw the text which is to be displayed when the game is paused. This
+	 * includes instructions on how to play.
+	 */
+	private void drawPauseScreen() {
+		int y = getCenteredStringY() - 70;
+		drawCenteredString("PAUSED", y);
+		y += 30;
+		drawCenteredString("Controls", y);
+		y += 20;
+		drawCenteredString("Move left: Left arrow", y);
+		y += 20;
+		drawCenteredString("Move right: Right arrow", y);
+		y += 20;
+		drawCenteredString("Space bar: Shoot", y);
+		y += 20;
+		drawCenteredString("Resume game: P", y);
+	}
+
+	/**
+	 * Draw hiscores onto the game panel.
+	 * 
+	 */
+	private void drawHiscores() {
+		int x = 30;
+		int y = 30;
+		g.drawString("Hiscores", x, y);
+		y += 30;
+		for (int i = 0; i < scores.length(); i++) {
+			Score score = scores.getScore(i);
+			if (score == null) {
+				int pos = i + 1;
+				String posStr = Integer.toString(pos) + ": ";
+				if (pos != 10)
+					posStr = '0' + posStr;
+				g.drawString(posStr, x, y);
+			} else {
+				g.drawString((i + 1) + ": " + score.getName(), x, y);
+				String scoreStr = Integer.toString(score.getScore());
+				g.drawString(scoreStr, x + 60, y);
+			}
+			y += 30;
+		}
+	}
+
+	/**
+	 * Draw entities onto the screen. These include aliens, missiles,
+	 * barricades, the player and occasionally a special alien.
+	 * 
+	 */
+	private void drawEntities() {
+		drawSlots(FrameSnapshot.ALIEN_SLOT, FrameSnapshot.PART_SLOT);
+		drawSlots(FrameSnapshot.MISSILE_SLOT, frame.size());
+		drawSlots(FrameSnapshot.PART_SLOT, FrameSnapshot.MISSILE_SLOT);
+	}
+
+	/**
+	 * Draw the entities in a range of slots of the frame.
+	 * 
+	 * @param from
+	 *            The first slot.
+	 * @param to
+	 *            The slot after the last.
+	 */
+	private void drawSlots(int from, int to) {
+		for (int i = from; i < to; i++) {
+			int x = frame.getX(i);
+			int y = frame.getY(i);
+			switch (frame.getKind(i)) {
+			case FrameSnapshot.ALIEN_ANIM1:
+				Alien.drawAt(g, x, y, true);
+				break;
+			case FrameSnapshot.ALIEN_ANIM2:
+				Alien.drawAt(g, x, y, false);
+				break;
+			case FrameSnapshot.BARRICADE_PART:
+				g.setColor(Constants.BARRICADE_COLOR);
+				g.fillRect(x, y, frame.getWidth(i), frame.getHeight(i));
+				break;
+			case FrameSnapshot.PLAYER:
+				Player.drawAt(g, x, y);
+				break;
+			case FrameSnapshot.SPECIAL_ALIEN:
+				SpecialAlien.drawAt(g, x, y);
+				break;
+			case FrameSnapshot.PLAYER_MISSILE:
+				g.setColor(Constants.PLAYER_MISSILE_COLOR);
+				g.fillRect(x, y, frame.getWidth(i), frame.getHeight(i));
+				break;
+			case FrameSnapshot.ALIEN_MISSILE:
+				g.setColor(Constants.ALIEN_MISSILE_COLOR);
+				g.fillRect(x, y, frame.getWidth(i), frame.getHeight(i));
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package alien;
+
+import java.awt.Graphics;
+
+/**
+ * Where the frames of the game are rendered and then put on the screen. A
+ * frame is rendered into the graphics context returned by getDrawGraphics(),
+ * and then presented with show(). If the screen is persistent, only the parts
+ * of the frame which have changed need to be rendered and presented.
+ * 
+ * @see ImageScreen
+ * @see BufferStrategyScreen
+ * @author Ole
+ */
+interface GameScreen {
+	/**
+	 * Get the graphics context into which the next frame is to be rendered.
+	 * 
+	 * @return A graphics context, or null if the screen is not ready yet.
+	 */
+	public Graphics getDrawGraphics();
+
+	/**
+	 * Determines whether the graphics context returned by getDrawGraphics()
+	 * still holds the previous frame, so that a frame can be rendered
+	 * incrementally.
+	 * 
+	 * @return true if the previous frame is kept, false otherwise.
+	 */
+	public boolean isPersistent();
+
+	/**
+	 * Put the rendered frame on the screen.
+	 * 
+	 * @param dirty
+	 *            The parts of the frame which have changed, or null if the
+	 *            whole frame has been rendered.
+	 * @return true if the frame was presented, false if its contents were lost
+	 *         and it must be rendered again.
+	 */
+	public boolean show(DirtyRegion dirty);
+
+	/**
+	 * Called when the window system has painted over the screen, so the next
+	 * frame has to be presented in full.
+	 */
+	public void exposed();
+}
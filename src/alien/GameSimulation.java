@@ -0,0 +1,1170 @@
+package alien;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import alien.entity.Alien;
+import alien.entity.AlienMissile;
+import alien.entity.Barricade;
+import alien.entity.BarricadePart;
+import alien.entity.Entity;
+import alien.entity.Missile;
+import alien.entity.MissileStore;
+import alien.entity.Player;
+import alien.entity.PlayerMissile;
+import alien.entity.Rectangle;
+import alien.entity.SpatialGrid;
+import alien.entity.SpecialAlien;
+import alien.stats.StateChangeEvent;
+
+/**
+ * The rules of the game, without any of the Swing, sound or timing code. A
+ * GameSimulation holds the aliens, missiles, barricades, player, timers and
+ * score, and is advanced one tick at a time with update(long). The time passed
+ * in is the only clock the simulation knows about, so a headless caller can
+ * step it as fast as the CPU allows:
+ * 
+ * <pre>
+ * GameSimulation sim = new GameSimulation();
+ * sim.newGame();
+ * sim.pressSpace();
+ * while (sim.getState() == GameSimulation.State.PLAYING)
+ * 	sim.step(16);
+ * </pre>
+ * 
+ * Anything the simulation wants shown or heard is passed on to its
+ * GameListener.
+ * 
+ * All random numbers come from generators split off the seed of the
+ * simulation, one per subsystem, so the same seed and the same inputs always
+ * give the same game, and simulations never share a generator. The inputs of a
+ * tick can be applied all at once with input(int), and the whole state of the
+ * simulation can be written and read back with writeState and readState.
+ * 
+ * @see GamePanel
+ * @author Ole
+ */
+public final class GameSimulation {
+	// --- INPUT BITS ---
+	// Keys held down during a tick.
+	public static final int INPUT_LEFT = 1;
+	public static final int INPUT_RIGHT = 1 << 1;
+	public static final int INPUT_SPACE = 1 << 2;
+	// Events which happened since the previous tick.
+	public static final int INPUT_PRESS_SPACE = 1 << 3;
+	public static final int INPUT_TOGGLE_PAUSE = 1 << 4;
+	public static final int INPUT_NEW_GAME = 1 << 5;
+	public static final int INPUT_PAUSE = 1 << 6;
+	public static final int INPUT_RESUME = 1 << 7;
+	// All the bits of the keys held down.
+	public static final int INPUT_HELD_KEYS = INPUT_LEFT | INPUT_RIGHT
+			| INPUT_SPACE;
+
+	// version of the format written by writeState
+	private static final int STATE_VERSION = 1;
+
+	public static final Rectangle gameScreen = new Rectangle(0, 0,
+			Constants.PANEL_WIDTH, Constants.PANEL_HEIGHT);
+
+	// controls how often the special sound starts playing
+	private static final int SPECIAL_SOUND_MAX = 140;
+	/*
+	 * Controls how many milliseconds there should be between each time the
+	 * aliens move at the beginning of the game.
+	 */
+	private static final int START_ALIEN_MOVEMENT_DELAY = 500;
+	/*
+	 * Controls how often the last alien in each column should fire (delay in
+	 * ms).
+	 */
+	private static final int START_ALIEN_FIRE_DELAY_MIN = 200;
+	private static final int START_ALIEN_FIRE_DELAY_MAX = 5000;
+
+	/*
+	 * Slots of the entities in the collision grid. Barricade parts come before
+	 * aliens, so a missile which hits both hits the barricade.
+	 */
+	private static final int BARRICADE_SLOT = 0;
+	private static final int ALIEN_SLOT = BARRICADE_SLOT
+			+ Constants.BARRICADE_COUNT * Barricade.PART_COUNT;
+	private static final int GRID_SLOTS = ALIEN_SLOT + Constants.ALIEN_ROWS
+			* Constants.ALIEN_COLS;
+
+	// --- TIMER VARIABLES ---
+	// The simulation time in ms, as passed to the latest update.
+	private long time;
+	private double alienFireDelayMin;
+	private double alienFireDelayMax;
+	/*
+	 * Stores the amount of time between the last fired missile and when the
+	 * next one should be fired.
+	 */
+	private double[] alienFireRandom = new double[Constants.ALIEN_COLS];
+	// stores the time at which each column of aliens last fired
+	private long[] alienFireTimer = new long[Constants.ALIEN_COLS];
+	// The delay between each horizontal alien movement.
+	private double alienMovementDelay = START_ALIEN_MOVEMENT_DELAY;
+	// The time at which the aliens last moved.
+	private long alienMoveTimer;
+	// Controls that the special alien sound is played again at the right time
+	private int specialSoundCount;
+	private double alienMoveDelayMultiplier;
+	// --- SPECIAL ALIEN TIMERS ---
+	/*
+	 * The minimum amount of time between the appearance of a new special alien
+	 * after the beginning of a level or one is killed or disappears.
+	 */
+	private static final int SPECIAL_DELAY_MIN = 10000;
+	/*
+	 * The maximum amount of time between the appearance of a new special alien
+	 * after the beginning of a level or one is killed or disappears.
+	 */
+	private static final int SPECIAL_DELAY_MAX = 20000;
+	// the time at which the special alien timer started
+	private long specialTimer;
+	/*
+	 * The amount of time after the start of the special alien timer the special
+	 * alien should appear.
+	 */
+	private int specialDelay;
+
+	// --- RANDOM NUMBER GENERATORS ---
+	// The seed all the generators are split off.
+	private long seed;
+	// generates the delays between the missiles fired by each alien column
+	private SplitMix64 fireRandom;
+	// generates the delays before a new special alien appears
+	private SplitMix64 specialRandom;
+	// generates the side a special alien appears on
+	private SplitMix64 directionRandom;
+
+	// keyboard input variables
+	private boolean leftPressed = false;
+	private boolean rightPressed = false;
+	private boolean spacePressed = false;
+
+	// Receives sounds, status bar updates and state changes.
+	private GameListener listener;
+	// The state at which the game is in.
+	private State state;
+	// The current score.
+	private int score;
+	// The current level.
+	private int level;
+	// the next alien move sound to be played.
+	private int alienMoveSound = Sound.MOVE1;
+
+	// visible entities
+	private Player player;
+	private Barricade[] barricades;
+	private Alien[] aliens = new Alien[Constants.ALIEN_ROWS
+			* Constants.ALIEN_COLS];
+	private MissileStore missiles = new MissileStore(Constants.MAX_MISSILES);
+	private SpecialAlien specialAlien;
+	// broadphase used to find the barricade parts and aliens near a missile
+	private SpatialGrid grid = new SpatialGrid(Constants.PANEL_WIDTH,
+			Constants.PANEL_HEIGHT, GRID_SLOTS);
+	// the number of entities tested for a collision with a missile, for the
+	// statistics; not part of the saved state
+	private long collisionTests;
+
+	/**
+	 * Create a headless simulation, which ignores sounds and status bar
+	 * updates.
+	 */
+	public GameSimulation() {
+		this(new GameAdapter() {
+		});
+	}
+
+	/**
+	 * Create a headless simulation with the given seed, which ignores sounds
+	 * and status bar updates.
+	 * 
+	 * @param seed
+	 *            The seed of the random number generators.
+	 */
+	public GameSimulation(long seed) {
+		this(new GameAdapter() {
+		}, seed);
+	}
+
+	/**
+	 * Create a simulation which reports to the given listener, with a new
+	 * random seed.
+	 * 
+	 * @param listener
+	 *            The listener notified of sounds, status bar updates and
+	 *            state changes.
+	 */
+	public GameSimulation(GameListener listener) {
+		this(listener, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Create a simulation which reports to the given listener. The simulation
+	 * starts at the welcome screen.
+	 * 
+	 * @param listener
+	 *            The listener notified of sounds, status bar updates and
+	 *            state changes.
+	 * @param seed
+	 *            The seed of the random number generators.
+	 */
+	public GameSimulation(GameListener listener, long seed) {
+		this.listener = listener;
+		this.seed = seed;
+		seedRandom();
+		player = new Player((Constants.PANEL_WIDTH - Player.WIDTH) / 2,
+				Constants.PANEL_HEIGHT - Player.HEIGHT);
+		barricades = new Barricade[Constants.BARRICADE_COUNT];
+		setState(State.WELCOME_SCREEN);
+	}
+
+	/**
+	 * Determines what should happen when space is pressed in the different
+	 * states.
+	 */
+	public void pressSpace() {
+		switch (state) {
+		case PLAYING:
+			spacePressed = true;
+			break;
+		case LEVEL_PAUSE:
+			nextLevel();
+			break;
+		case NEW_GAME:
+			setState(State.PLAYING);
+			break;
+		case WELCOME_SCREEN:
+		case GAME_OVER:
+			newGame();
+		}
+	}
+
+	/**
+	 * Apply the input of a tick: the keys held down are set, and then the
+	 * events are processed in the order of their bits.
+	 * 
+	 * @param input
+	 *            The INPUT_ bits of the keys held down and the events which
+	 *            happened since the previous tick.
+	 */
+	public void input(int input) {
+		leftPressed = (input & INPUT_LEFT) != 0;
+		rightPressed = (input & INPUT_RIGHT) != 0;
+		spacePressed = (input & INPUT_SPACE) != 0;
+		if ((input & INPUT_PRESS_SPACE) != 0)
+			pressSpace();
+		if ((input & INPUT_TOGGLE_PAUSE) != 0)
+			togglePause();
+		if ((input & INPUT_NEW_GAME) != 0)
+			newGame();
+		if ((input & INPUT_PAUSE) != 0)
+			pause();
+		if ((input & INPUT_RESUME) != 0)
+			resume();
+	}
+
+	public void setSpacePressed(boolean spacePressed) {
+		this.spacePressed = spacePressed;
+	}
+
+	public void setLeftPressed(boolean leftPressed) {
+		this.leftPressed = leftPressed;
+	}
+
+	public void setRightPressed(boolean rightPressed) {
+		this.rightPressed = rightPressed;
+	}
+
+	/**
+	 * Pause the game if it is being played. Any keys held down are released.
+	 */
+	public void pause() {
+		if (state == State.PLAYING) {
+			setState(State.PAUSED);
+			spacePressed = false;
+			leftPressed = false;
+			rightPressed = false;
+		}
+	}
+
+	/**
+	 * Resume the game if it is paused or has not been started yet.
+	 */
+	public void resume() {
+		if (state == State.PAUSED || state == State.NEW_GAME) {
+			setState(State.PLAYING);
+		}
+	}
+
+	/**
+	 * Pause the game if it is being played, or resume it if it is paused.
+	 */
+	public void togglePause() {
+		if (state == State.PAUSED)
+			resume();
+		else if (state == State.PLAYING)
+			pause();
+	}
+
+	/**
+	 * Start a new game.
+	 */
+	public void newGame() {
+		player.reset();
+		score = 0;
+		level = 0;
+		resetFireDelay();
+		nextLevel();
+		updateAlienCounter();
+		if (state != State.PLAYING)
+			setState(State.NEW_GAME);
+	}
+
+	/**
+	 * Go to next level.
+	 */
+	private void nextLevel() {
+		level++;
+		listener.levelChanged(level);
+		listener.scoreChanged(score);
+		alienMovementDelay = START_ALIEN_MOVEMENT_DELAY;
+		alienMoveDelayMultiplier = 1 - level / 400D;
+		setupEntities();
+		decreaseFireDelay();
+		if (state == State.LEVEL_PAUSE) {
+			player.gainLife();
+			setState(State.PLAYING);
+		}
+		listener.livesChanged(player.getLives());
+	}
+
+	/**
+	 * Decrease the maximum amount of time in which an alien waits before firing
+	 * again.
+	 */
+	private void decreaseFireDelay() {
+		alienFireDelayMax *= 0.95;
+	}
+
+	/**
+	 * Reset the randomisation variables of the delay between each time each
+	 * alien column fires.
+	 */
+	private void resetFireDelay() {
+		// currently never changed, but may want to in the future.
+		alienFireDelayMin = START_ALIEN_FIRE_DELAY_MIN;
+		alienFireDelayMax = START_ALIEN_FIRE_DELAY_MAX;
+	}
+
+	/**
+	 * Randomise the aliens' fire timer and and the amount of time until the
+	 * next time they fire. The fire timer starts when an alien fires.
+	 */
+	private void randomizeFireDelay() {
+		for (int i = 0; i < Constants.ALIEN_COLS; i++) {
+			alienFireTimer[i] = time;
+			alienFireRandom[i] = generateFireDelay();
+		}
+	}
+
+	/**
+	 * Reset the special alien so that it appears in SPECIAL_DELAY_MIN to
+	 * SPECIAL_DELAY_MAX milliseconds after the method call.
+	 */
+	private void resetSpecialAlien() {
+		if (specialAlien != null)
+			specialAlien = null;
+		specialDelay = specialRandom.nextInt(SPECIAL_DELAY_MIN,
+				SPECIAL_DELAY_MAX);
+		specialTimer = time;
+	}
+
+	/**
+	 * Set up the entities on the screen in preparation for a new level.
+	 */
+	private void setupEntities() {
+		missiles.clear();
+		addBarricades();
+		addAliens();
+	}
+
+	/**
+	 * Add new barricades to the game.
+	 */
+	private void addBarricades() {
+		int x = 30;
+		for (int i = 0; i < barricades.length; i++) {
+			Barricade bar = new Barricade(x, Constants.BARRICADE_AREA_Y);
+			barricades[i] = bar;
+			for (int part = 0; part < bar.size(); part++) {
+				grid.put(BARRICADE_SLOT + i * Barricade.PART_COUNT + part,
+						bar.getPart(part));
+			}
+			x += 125;
+		}
+	}
+
+	/**
+	 * Add aliens to the screen.
+	 */
+	private void addAliens() {
+		int x;
+		int y = 30;
+		for (int row = 0; row < Constants.ALIEN_ROWS; row++) {
+			x = 30;
+			for (int col = 0; col < Constants.ALIEN_COLS; col++) {
+				int i = row * Constants.ALIEN_COLS + col;
+				aliens[i] = new Alien(x, y);
+				grid.put(ALIEN_SLOT + i, aliens[i]);
+				x += 50;
+			}
+			y += 40;
+		}
+	}
+
+	/**
+	 * Advance the simulation by the given number of milliseconds.
+	 * 
+	 * @param elapsed
+	 *            The number of milliseconds since the previous update.
+	 */
+	public void step(long elapsed) {
+		update(time + elapsed);
+	}
+
+	/*
+	 * ======================================================================
+	 * update The objects in the game are each updated. All timers are
+	 * compared against the given time (in ms), never against the system clock.
+	 * ======================================================================
+	 */
+	public void update(long now) {
+		time = now;
+		if (state == State.PLAYING) {
+			if (timeForAlienMovement()) {
+				if (wrongAlienDirection()) {
+					moveAliensDown();
+					if (alienInBarricadeArea()) {
+						setState(State.GAME_OVER);
+					} else {
+						changeAlienDirection();
+					}
+				} else {
+					moveAliens();
+				}
+				if (getAlienCount() > 0) {
+					listener.playSound(alienMoveSound);
+					nextAlienSound();
+				}
+				alienMoveTimer = time;
+			}
+			if (timeForSpecialAlien()) {
+				specialAlien = new SpecialAlien(
+						directionRandom.nextBoolean() ? Constants.RIGHT
+								: Constants.LEFT);
+			}
+			if (specialAlien != null) {
+				specialAlien.move();
+				if (specialSoundCount == 0)
+					listener.playSound(Sound.UFOLOW);
+				specialSoundCount = ++specialSoundCount % SPECIAL_SOUND_MAX;
+			}
+			alienFire();
+			moveMissiles();
+			deleteOutOfScreenEntities();
+			processCollisions();
+			processPressedKeys();
+			listener.scoreChanged(score);
+
+			updateAlienCounter();
+		}
+	} // end of update()
+
+	/**
+	 * Get the alienCount and update the alien counter in the status bar
+	 * accordingly. This counter includes the special alien.
+	 */
+	private void updateAlienCounter() {
+		int alienCount = getAlienCount();
+		if (specialAlien != null)
+			alienCount++;
+		else if (alienCount == 0) {
+			setState(State.LEVEL_PAUSE);
+		}
+		listener.alienCountChanged(alienCount);
+	}
+
+	/**
+	 * Returns the number of aliens which are alive, not including the special
+	 * alien.
+	 * 
+	 * @return The number of aliens alive.
+	 */
+	public int getAlienCount() {
+		int alienCount = 0;
+		for (Alien alien : aliens) {
+			if (alien != null)
+				alienCount++;
+		}
+		return alienCount;
+	}
+
+	/**
+	 * Determines if it is time for the aliens to make another horizontal move.
+	 * 
+	 * @return true is it is time for the aliens to make a move, false
+	 *         otherwise.
+	 */
+	private boolean timeForAlienMovement() {
+		return time - alienMoveTimer > alienMovementDelay;
+	}
+
+	/**
+	 * Determines if it is time for a new special alien to appear.
+	 * 
+	 * @return True if is it time for a special alien to appear, false
+	 *         otherwise.
+	 */
+	private boolean timeForSpecialAlien() {
+		return specialAlien == null && time - specialTimer > specialDelay;
+	}
+
+	/**
+	 * Determines if the aliens are facing in the wrong direction and should
+	 * move in the opposite direction of what they are.
+	 * 
+	 * @return true if the first living alien in any column is facing the wrong
+	 *         direction, false otherwise.
+	 */
+	private boolean wrongAlienDirection() {
+		for (int col = 0; col < Constants.ALIEN_COLS; col++) {
+			for (int row = 0; row < Constants.ALIEN_ROWS; row++) {
+				Alien alien = aliens[row * Constants.ALIEN_COLS + col];
+				if (alien != null) {
+					if (alien.facingWrongDirection()) {
+						return true;
+					}
+					break;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if the lowest row of living aliens have entered the barricade
+	 * area.
+	 * 
+	 * @return true if the lowest row of living aliens have entered barricade
+	 *         area, false otherwise.
+	 */
+	private boolean alienInBarricadeArea() {
+		for (int row = Constants.ALIEN_ROWS - 1; row >= 0; row--) {
+			for (int col = 0; col < Constants.ALIEN_COLS; col++) {
+				Alien alien = aliens[row * Constants.ALIEN_COLS + col];
+				// alien is dead, continue searching row.
+				if (alien == null)
+					continue;
+				if (alien.inBarricadeArea())
+					return true;
+				/*
+				 * If there are living aliens in the lowest row which are not in
+				 * the barricade area.
+				 */
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Make all the aliens move down.
+	 */
+	private void moveAliensDown() {
+		for (Alien alien : aliens) {
+			if (alien != null) {
+				alien.changeAnimation();
+				alien.moveDown();
+			}
+		}
+	}
+
+	/**
+	 * Switch the direction in which all the aliens are moving.
+	 */
+	private void changeAlienDirection() {
+		for (Alien alien : aliens) {
+			if (alien != null)
+				alien.changeDirection();
+		}
+	}
+
+	/**
+	 * Go through and check if it is time for the last alien in each of the
+	 * columns to fire, and it is, make them.
+	 */
+	private void alienFire() {
+		for (int col = 0; col < Constants.ALIEN_COLS; col++) {
+			boolean timeToFire = timeToFire(col);
+			if (!timeToFire)
+				continue;
+			for (int row = Constants.ALIEN_ROWS - 1; row >= 0; row--) {
+				Alien alien = aliens[row * Constants.ALIEN_COLS + col];
+				// If the alien is dead, continue to the alien above it
+				if (alien != null) {
+					alien.fire(missiles);
+					break;
+				}
+			}
+			resetAlienColumnFireTimer(col);
+		}
+	}
+
+	/**
+	 * Set the current time as the time at which the selected alien column fired
+	 * and randomise the time until the next time it will fire.
+	 * 
+	 * @param col
+	 *            The column of aliens selected.
+	 */
+	private void resetAlienColumnFireTimer(int col) {
+		alienFireTimer[col] = time;
+		alienFireRandom[col] = generateFireDelay();
+	}
+
+	/**
+	 * Generate a random delay until an alien column fires again.
+	 * 
+	 * @return A delay in the range alienFireDelayMin to alienFireDelayMax.
+	 */
+	private double generateFireDelay() {
+		return fireRandom.nextDouble() * (alienFireDelayMax - alienFireDelayMin)
+				+ alienFireDelayMin;
+	}
+
+	/**
+	 * Determine if it is time for the last alien in a column to fire.
+	 * 
+	 * @param col
+	 *            The column of aliens selected.
+	 * @return true if it is time for the last alien in a column to fire.
+	 */
+	private boolean timeToFire(int col) {
+		return time - alienFireTimer[col] > alienFireRandom[col];
+	}
+
+	/**
+	 * Delete any out of screen entities, including missiles and special aliens.
+	 */
+	private void deleteOutOfScreenEntities() {
+		for (int i = 0; i < missiles.size(); i++) {
+			if (!onScreen(missiles.get(i))) {
+				missiles.remove(i--);
+			}
+		}
+		if (specialAlien != null && !onScreen(specialAlien)) {
+			resetSpecialAlien();
+		}
+	}
+
+	/**
+	 * Determines whether or not an entity is on the screen.
+	 * 
+	 * @param entity
+	 *            An entity.
+	 * @return true if any part of the entity is on the screen, false otherwise.
+	 */
+	private boolean onScreen(Entity entity) {
+		return entity != null && entity.intersects(gameScreen);
+	}
+
+	/**
+	 * Process keys which are pressed.
+	 */
+	private void processPressedKeys() {
+		if (state != State.PLAYING)
+			return;
+		if (rightPressed) {
+			if (!leftPressed)
+				player.moveRight();
+		} else if (leftPressed) {
+			player.moveLeft();
+		}
+		if (spacePressed && missiles.getPlayerMissileCount() == 0) {
+			if (player.fire(missiles) != null)
+				listener.playSound(Sound.LASER);
+		}
+	}
+
+	/**
+	 * Process collisions. The collision grid is queried once per missile, and
+	 * its candidates are checked for both barricade parts and aliens.
+	 * Package-private, like barricadeCollisionWith, alienCollisionWith and
+	 * killAlien below, so that the benchmarks can measure it in isolation.
+	 */
+	void processCollisions() {
+		// process alienMissile collisions
+		for (int misCount = 0; misCount < missiles.size(); misCount++) {
+			Missile mis = missiles.get(misCount);
+			collisionTests++;
+			grid.query(mis);
+			if (player.collidedWith(mis)) {
+				missiles.remove(misCount--);
+				listener.playSound(Sound.BOOM);
+				player.die();
+				if (!player.isAlive()) {
+					setState(State.GAME_OVER);
+				}
+				listener.livesChanged(player.getLives());
+			} else if (barricadeCandidateCollision(mis)) {
+				missiles.remove(misCount--);
+				break;
+			} else if (mis instanceof PlayerMissile
+					&& alienCandidateCollision(mis)) {
+				alienMovementDelay *= alienMoveDelayMultiplier;
+				score += Constants.ALIEN_POINTS;
+				listener.playSound(Sound.KILL);
+				missiles.remove(misCount--);
+			} else if (specialAlien != null && specialAlienCollisionWith(mis)) {
+				score += getSpecialAlienPoints();
+				listener.playSound(Sound.KILL);
+				missiles.remove(misCount--);
+				resetSpecialAlien();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of points rewarded for killing the special alien at
+	 * this time. This number is ten times the number of aliens that have been
+	 * killed.
+	 * 
+	 * @return 10 * aliens killed
+	 */
+	private int getSpecialAlienPoints() {
+		return (Constants.ALIEN_ROWS * Constants.ALIEN_COLS - getAlienCount())
+				* Constants.SPECIAL_ALIEN_POINT_MULTIPLIER;
+	}
+
+	/**
+	 * Determines whether a missile has collided with any of the barricades and
+	 * degrades any barricade-part accordingly. Only the barricade parts in the
+	 * grid cells overlapped by the missile are checked.
+	 * 
+	 * @param mis
+	 *            A missile.
+	 * @return true is the missile has collided with a barricade, false
+	 *         otherwise.
+	 */
+	boolean barricadeCollisionWith(Missile mis) {
+		grid.query(mis);
+		return barricadeCandidateCollision(mis);
+	}
+
+	/**
+	 * Determines whether a missile has collided with any of the barricade
+	 * parts found by the latest query of the collision grid, which must have
+	 * been for the missile, and degrades the part hit accordingly.
+	 * 
+	 * @param mis
+	 *            A missile.
+	 * @return true is the missile has collided with a barricade, false
+	 *         otherwise.
+	 */
+	private boolean barricadeCandidateCollision(Missile mis) {
+		for (int slot = grid.nextCandidate(BARRICADE_SLOT); slot != -1
+				&& slot < ALIEN_SLOT; slot = grid.nextCandidate(slot + 1)) {
+			BarricadePart part = (BarricadePart) grid.get(slot);
+			collisionTests++;
+			if (part.collidedWith(mis)) {
+				if (mis instanceof AlienMissile) {
+					part.degradeAbove();
+				} else if (mis instanceof PlayerMissile) {
+					part.degradeBelow();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether a missile has collided with any of the aliens and an
+	 * alien accordingly. Only the aliens in the grid cells overlapped by the
+	 * missile are checked.
+	 * 
+	 * @param mis
+	 *            A missile.
+	 * @return true is the missile has collided with an alien, false otherwise.
+	 */
+	boolean alienCollisionWith(Missile mis) {
+		grid.query(mis);
+		return alienCandidateCollision(mis);
+	}
+
+	/**
+	 * Determines whether a missile has collided with any of the aliens found
+	 * by the latest query of the collision grid, which must have been for the
+	 * missile, and kills the alien hit.
+	 * 
+	 * @param mis
+	 *            A missile.
+	 * @return true is the missile has collided with an alien, false otherwise.
+	 */
+	private boolean alienCandidateCollision(Missile mis) {
+		for (int slot = grid.nextCandidate(ALIEN_SLOT); slot != -1; slot = grid
+				.nextCandidate(slot + 1)) {
+			collisionTests++;
+			if (grid.get(slot).collidedWith(mis)) {
+				killAlien(slot - ALIEN_SLOT);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remove an alien from the formation and from the collision grid, as when
+	 * it is hit by a missile, but without scoring it.
+	 * 
+	 * @param index
+	 *            The index of the alien in getAliens().
+	 */
+	void killAlien(int index) {
+		aliens[index] = null;
+		grid.remove(ALIEN_SLOT + index);
+	}
+
+	/**
+	 * Determines whether a missile has collided with the special alien, which
+	 * must be on the screen.
+	 * 
+	 * @param mis
+	 *            A missile.
+	 * @return true is the missile has collided with the special alien, false
+	 *         otherwise.
+	 */
+	private boolean specialAlienCollisionWith(Missile mis) {
+		collisionTests++;
+		return specialAlien.collidedWith(mis);
+	}
+
+	/**
+	 * Move all the missiles on the screen.
+	 */
+	private void moveMissiles() {
+		for (int i = 0; i < missiles.size(); i++) {
+			missiles.get(i).move();
+		}
+	}
+
+	/**
+	 * Move all the aliens on the screen.
+	 */
+	private void moveAliens() {
+		for (Alien alien : aliens) {
+			if (alien != null) {
+				alien.changeAnimation();
+				alien.move();
+			}
+		}
+	}
+
+	/**
+	 * Choose the next alien sound to be played.
+	 */
+	private void nextAlienSound() {
+		alienMoveSound++;
+		if (alienMoveSound > Sound.MOVE4) {
+			alienMoveSound = Sound.MOVE1;
+		}
+	}
+
+	/**
+	 * Get the current state of the game.
+	 * 
+	 * @return The current state of the game.
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Set the current state of the game.
+	 * 
+	 * @param state
+	 *            A state.
+	 */
+	public void setState(State state) {
+		switch (state) {
+		case PLAYING:
+			if (specialAlien == null)
+				resetSpecialAlien();
+			randomizeFireDelay();
+			break;
+		}
+		State from = this.state;
+		this.state = state;
+		StateChangeEvent event = new StateChangeEvent();
+		if (event.shouldCommit()) {
+			event.from = from == null ? null : from.name();
+			event.to = state.name();
+			event.level = level;
+			event.score = score;
+			event.commit();
+		}
+		listener.stateChanged(state);
+	}
+
+	/**
+	 * Split the random number generators off the seed, which brings them back
+	 * to the start of their sequences.
+	 */
+	private void seedRandom() {
+		SplitMix64 random = new SplitMix64(seed);
+		fireRandom = random.split();
+		specialRandom = random.split();
+		directionRandom = random.split();
+	}
+
+	/**
+	 * Write the whole state of the simulation: timers, score, entities and
+	 * the position of the random number generators. The listener is not
+	 * written.
+	 * 
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeByte(STATE_VERSION);
+		out.writeLong(seed);
+		out.writeLong(fireRandom.getState());
+		out.writeLong(specialRandom.getState());
+		out.writeLong(directionRandom.getState());
+
+		out.writeLong(time);
+		out.writeDouble(alienFireDelayMin);
+		out.writeDouble(alienFireDelayMax);
+		for (int col = 0; col < Constants.ALIEN_COLS; col++) {
+			out.writeDouble(alienFireRandom[col]);
+			out.writeLong(alienFireTimer[col]);
+		}
+		out.writeDouble(alienMovementDelay);
+		out.writeLong(alienMoveTimer);
+		out.writeInt(specialSoundCount);
+		out.writeDouble(alienMoveDelayMultiplier);
+		out.writeLong(specialTimer);
+		out.writeInt(specialDelay);
+
+		out.writeBoolean(leftPressed);
+		out.writeBoolean(rightPressed);
+		out.writeBoolean(spacePressed);
+		out.writeByte(state.ordinal());
+		out.writeInt(score);
+		out.writeInt(level);
+		out.writeInt(alienMoveSound);
+
+		player.writeState(out);
+		// the barricades only exist once the first game has started
+		out.writeBoolean(barricades[0] != null);
+		if (barricades[0] != null) {
+			for (Barricade bar : barricades)
+				bar.writeState(out);
+		}
+		for (Alien alien : aliens) {
+			out.writeBoolean(alien != null);
+			if (alien != null)
+				alien.writeState(out);
+		}
+		missiles.writeState(out);
+		out.writeBoolean(specialAlien != null);
+		if (specialAlien != null)
+			specialAlien.writeState(out);
+	}
+
+	/**
+	 * Replace the state of the simulation, including its seed, with one
+	 * written by writeState. The listener is then told about the new state,
+	 * level, score, lives and number of aliens.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read, or was not written by
+	 *             writeState.
+	 */
+	public void readState(DataInput in) throws IOException {
+		int version = in.readUnsignedByte();
+		if (version != STATE_VERSION)
+			throw new IOException("Unsupported state version: " + version);
+		seed = in.readLong();
+		seedRandom();
+		fireRandom.setState(in.readLong());
+		specialRandom.setState(in.readLong());
+		directionRandom.setState(in.readLong());
+
+		time = in.readLong();
+		alienFireDelayMin = in.readDouble();
+		alienFireDelayMax = in.readDouble();
+		for (int col = 0; col < Constants.ALIEN_COLS; col++) {
+			alienFireRandom[col] = in.readDouble();
+			alienFireTimer[col] = in.readLong();
+		}
+		alienMovementDelay = in.readDouble();
+		alienMoveTimer = in.readLong();
+		specialSoundCount = in.readInt();
+		alienMoveDelayMultiplier = in.readDouble();
+		specialTimer = in.readLong();
+		specialDelay = in.readInt();
+
+		leftPressed = in.readBoolean();
+		rightPressed = in.readBoolean();
+		spacePressed = in.readBoolean();
+		int ordinal = in.readUnsignedByte();
+		if (ordinal >= State.values().length)
+			throw new IOException("Invalid state: " + ordinal);
+		state = State.values()[ordinal];
+		score = in.readInt();
+		level = in.readInt();
+		alienMoveSound = in.readInt();
+
+		player.readState(in);
+		if (in.readBoolean()) {
+			addBarricades();
+			for (Barricade bar : barricades)
+				bar.readState(in);
+		} else {
+			for (int slot = BARRICADE_SLOT; slot < ALIEN_SLOT; slot++)
+				grid.remove(slot);
+			for (int i = 0; i < barricades.length; i++)
+				barricades[i] = null;
+		}
+		for (int i = 0; i < aliens.length; i++) {
+			grid.remove(ALIEN_SLOT + i);
+			aliens[i] = null;
+			if (in.readBoolean()) {
+				aliens[i] = new Alien(0, 0);
+				aliens[i].readState(in);
+				grid.put(ALIEN_SLOT + i, aliens[i]);
+			}
+		}
+		missiles.readState(in);
+		specialAlien = null;
+		if (in.readBoolean()) {
+			specialAlien = new SpecialAlien(Constants.RIGHT);
+			specialAlien.readState(in);
+		}
+
+		listener.stateChanged(state);
+		listener.levelChanged(level);
+		listener.scoreChanged(score);
+		listener.livesChanged(player.getLives());
+		int alienCount = getAlienCount();
+		if (specialAlien != null)
+			alienCount++;
+		listener.alienCountChanged(alienCount);
+	}
+
+	/**
+	 * Get the seed of the random number generators.
+	 * 
+	 * @return The seed of the simulation.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Get the simulation time passed to the latest update.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Get the number of entities tested for a collision with a missile since
+	 * the simulation was created.
+	 * 
+	 * @return The number of collision tests.
+	 */
+	public long getCollisionTests() {
+		return collisionTests;
+	}
+
+	/**
+	 * Get the number of moving entities: the player, the aliens alive, the
+	 * special alien and the missiles.
+	 * 
+	 * @return The number of entities.
+	 */
+	public int getEntityCount() {
+		int count = 1 + getAlienCount() + missiles.size();
+		if (specialAlien != null)
+			count++;
+		return count;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Get the barricades. The array is not copied, and must not be modified.
+	 * 
+	 * @return The barricades.
+	 */
+	public Barricade[] getBarricades() {
+		return barricades;
+	}
+
+	/**
+	 * Get the aliens, row by row. Dead aliens are null. The array is not
+	 * copied, and must not be modified.
+	 * 
+	 * @return The aliens.
+	 */
+	public Alien[] getAliens() {
+		return aliens;
+	}
+
+	/**
+	 * Get the missiles on the screen. The store is not copied, and must not be
+	 * modified.
+	 * 
+	 * @return The missiles.
+	 */
+	public MissileStore getMissiles() {
+		return missiles;
+	}
+
+	/**
+	 * Get the special alien.
+	 * 
+	 * @return The special alien, or null if there is none on the screen.
+	 */
+	public SpecialAlien getSpecialAlien() {
+		return specialAlien;
+	}
+
+	// Enumerated type which specifies the state of the game.
+	public enum State {
+		WELCOME_SCREEN, NEW_GAME, GAME_OVER, LEVEL_PAUSE, PAUSED, PLAYING
+	}
+}
@@ -0,0 +1,70 @@
+package alien;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits in three steps: sleeps in whole milliseconds for the bulk of the
+ * time, parks for the time left but the last few microseconds, and spins for
+ * those. Sleeping stops a margin before the deadline, larger than the sleep
+ * usually overshoots by, and parking, which is more precise, stops a smaller
+ * margin before it. The spin is therefore bounded by the spin margin, unless
+ * the park overshoots it, so little CPU is burned.
+ * 
+ * Setting a margin to Long.MAX_VALUE skips that step and those before it,
+ * e.g. a pacer which only parks and spins, or only spins.
+ * 
+ * @author Ole
+ */
+final class HybridPacer implements FramePacer {
+	// the default margins, in ns
+	public static final long DEFAULT_SLEEP_MARGIN = 2000000L;
+	public static final long DEFAULT_SPIN_MARGIN = 100000L;
+
+	private final String name;
+	// stop sleeping and parking this long before the deadline, in ns
+	private final long sleepMargin;
+	private final long spinMargin;
+
+	/**
+	 * Create a pacer.
+	 * 
+	 * @param name
+	 *            The name of the pacer, as given on the command line.
+	 * @param sleepMargin
+	 *            How long before the deadline to stop sleeping, in ns.
+	 * @param spinMargin
+	 *            How long before the deadline to stop parking, in ns. Must not
+	 *            be greater than the sleep margin.
+	 */
+	HybridPacer(String name, long sleepMargin, long spinMargin) {
+		if (spinMargin < 0 || sleepMargin < spinMargin)
+			throw new IllegalArgumentException("Bad margins: " + sleepMargin
+					+ ", " + spinMargin);
+		this.name = name;
+		this.sleepMargin = sleepMargin;
+		this.spinMargin = spinMargin;
+	}
+
+	public void waitUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		// sleep in whole ms, as the ns are ignored by most systems
+		while (remaining > sleepMargin && remaining - sleepMargin >= 1000000L) {
+			try {
+				Thread.sleep((remaining - sleepMargin) / 1000000L);
+			} catch (InterruptedException ex) {
+			}
+			remaining = deadline - System.nanoTime();
+		}
+		// parking may return early, so park until within the spin margin
+		while (remaining > spinMargin) {
+			LockSupport.parkNanos(remaining - spinMargin);
+			remaining = deadline - System.nanoTime();
+		}
+		while (deadline - System.nanoTime() > 0)
+			Thread.onSpinWait();
+	}
+
+	public String toString() {
+		return name;
+	}
+}
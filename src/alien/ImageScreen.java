@@ -0,0 +1,81 @@
+package alien;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+
+/**
+ * Presents frames by rendering them into an off screen image, which is then
+ * drawn onto the component with its getGraphics(). This is the original way
+ * the game is drawn (active rendering with a double buffer).
+ * 
+ * @author Ole
+ */
+final class ImageScreen implements GameScreen {
+	// the component the frames are drawn onto
+	private Component component;
+
+	// off screen rendering
+	private Graphics g;
+	private Image dbImage = null;
+	// set when the whole image has to be drawn onto the component again
+	private volatile boolean exposed = true;
+
+	/**
+	 * Create a screen drawing onto the given component.
+	 * 
+	 * @param component
+	 *            The component.
+	 */
+	ImageScreen(Component component) {
+		this.component = component;
+	}
+
+	public Graphics getDrawGraphics() {
+		if (dbImage == null) {
+			dbImage = component.createImage(Constants.PANEL_WIDTH,
+					Constants.PANEL_HEIGHT);
+			if (dbImage == null) {
+				System.out.println("dbImage is null");
+				return null;
+			} else
+				g = dbImage.getGraphics();
+		}
+		return g;
+	}
+
+	public boolean isPersistent() {
+		return true;
+	}
+
+	public boolean show(DirtyRegion dirty) {
+		Graphics g;
+		try {
+			g = component.getGraphics();
+			if ((g != null) && (dbImage != null)) {
+				if (exposed || dirty == null || dirty.isFull()) {
+					exposed = false;
+					g.drawImage(dbImage, 0, 0, null);
+				} else {
+					// only copy the parts of the image which have changed
+					for (int i = 0; i < dirty.size(); i++) {
+						int x1 = dirty.getX(i);
+						int y1 = dirty.getY(i);
+						int x2 = x1 + dirty.getWidth(i);
+						int y2 = y1 + dirty.getHeight(i);
+						g.drawImage(dbImage, x1, y1, x2, y2, x1, y1, x2, y2,
+								null);
+					}
+				}
+			}
+			g.dispose();
+		} catch (Exception e) {
+			System.out.println("Graphics context error: " + e);
+		}
+		return true;
+	}
+
+	public void exposed() {
+		exposed = true;
+	}
+}
@@ -0,0 +1,170 @@
+package alien;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of timestamped input events, passed from the event dispatch
+ * thread to the animation thread without locks.
+ * 
+ * There must be exactly one producer thread, which offers events, and one
+ * consumer thread, which polls them. The events are kept in a ring of
+ * primitive arrays, so offering and polling never allocate. Each side only
+ * writes its own index, with an ordered store which publishes the slots it
+ * has written or freed, and keeps a cached copy of the other side's index,
+ * so the shared indexes are only read again when the queue looks full or
+ * empty.
+ * 
+ * An event is a non-zero int, whose meaning is up to the user of the queue.
+ * It is stamped with the time it was received and the time it was created,
+ * e.g. by the operating system, both on the System.nanoTime() clock. The
+ * consumer polls the events received before a deadline, so input can be
+ * applied to the tick during which it arrived.
+ * 
+ * @see GamePanel
+ * @author Ole
+ */
+public final class InputQueue {
+	// the capacity, a power of two
+	private final int capacity;
+	private final int mask;
+	// the events and their timestamps
+	private final int[] events;
+	private final long[] received;
+	private final long[] created;
+
+	// the number of events offered, written by the producer only
+	private final AtomicLong tail = new AtomicLong();
+	// the number of events polled, written by the consumer only
+	private final AtomicLong head = new AtomicLong();
+	// the producer's copies of tail and of the latest head it has read
+	private long producerTail;
+	private long producerHead;
+	// the consumer's copies of head and of the latest tail it has read
+	private long consumerHead;
+	private long consumerTail;
+	// the timestamps of the latest event polled, consumer only
+	private long polledReceived;
+	private long polledCreated;
+	// the number of events which did not fit, written by the producer only
+	private volatile long dropped;
+
+	/**
+	 * Create an empty queue.
+	 * 
+	 * @param capacity
+	 *            The maximum number of events in the queue, rounded up to a
+	 *            power of two.
+	 */
+	public InputQueue(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: "
+					+ capacity);
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		this.capacity = size;
+		mask = size - 1;
+		events = new int[size];
+		received = new long[size];
+		created = new long[size];
+	}
+
+	/**
+	 * Add an event to the queue. Must only be called by the producer.
+	 * 
+	 * @param event
+	 *            The event, which must not be 0.
+	 * @param receivedTime
+	 *            When the event was received.
+	 * @param createdTime
+	 *            When the event was created.
+	 * @return true if the event was added, false if the queue was full, in
+	 *         which case the event is dropped.
+	 */
+	public boolean offer(int event, long receivedTime, long createdTime) {
+		if (event == 0)
+			throw new IllegalArgumentException("Event must not be 0");
+		long t = producerTail;
+		if (t - producerHead == capacity) {
+			producerHead = head.get();
+			if (t - producerHead == capacity) {
+				dropped++;
+				return false;
+			}
+		}
+		int i = (int) t & mask;
+		events[i] = event;
+		received[i] = receivedTime;
+		created[i] = createdTime;
+		producerTail = t + 1;
+		// publishes the slot to the consumer
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Remove the oldest event from the queue, if it was received no later
+	 * than a deadline. Must only be called by the consumer. Its timestamps
+	 * can then be had from getPolledReceived() and getPolledCreated().
+	 * 
+	 * @param deadline
+	 *            The latest time at which the event may have been received,
+	 *            or Long.MAX_VALUE to take any event.
+	 * @return The event, or 0 if the queue is empty or its oldest event was
+	 *         received after the deadline.
+	 */
+	public int poll(long deadline) {
+		long h = consumerHead;
+		if (h == consumerTail) {
+			consumerTail = tail.get();
+			if (h == consumerTail)
+				return 0;
+		}
+		int i = (int) h & mask;
+		if (received[i] > deadline)
+			return 0;
+		int event = events[i];
+		polledReceived = received[i];
+		polledCreated = created[i];
+		consumerHead = h + 1;
+		// hands the slot back to the producer
+		head.lazySet(h + 1);
+		return event;
+	}
+
+	/**
+	 * Get when the latest event polled was received.
+	 * 
+	 * @return The time, on the System.nanoTime() clock.
+	 */
+	public long getPolledReceived() {
+		return polledReceived;
+	}
+
+	/**
+	 * Get when the latest event polled was created.
+	 * 
+	 * @return The time, on the System.nanoTime() clock.
+	 */
+	public long getPolledCreated() {
+		return polledCreated;
+	}
+
+	/**
+	 * Get the maximum number of events in the queue.
+	 * 
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the number of events dropped because the queue was full.
+	 * 
+	 * @return The number of events dropped.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+}
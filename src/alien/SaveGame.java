@@ -0,0 +1,145 @@
+package alien;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Saves a game in progress to a file, and loads it back. The file holds the
+ * state written by GameSimulation.writeState and the position of the game
+ * clock, in a compact binary format:
+ * 
+ * <pre>
+ * int     magic number
+ * byte    version
+ * long    tick length in ns
+ * long    clock ticks
+ * ...     simulation state, with a version of its own
+ * </pre>
+ * 
+ * The file is written in full to a temporary file, which is forced to disk
+ * and then replaces the save, so a crash while saving never leaves a broken
+ * save behind.
+ * 
+ * @see GameSimulation#writeState(java.io.DataOutput)
+ * @author Ole
+ */
+public final class SaveGame {
+	// "SAVE"
+	private static final int MAGIC = 0x53415645;
+	private static final int VERSION = 1;
+
+	private File file;
+	// reused to build the contents of each save
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+	/**
+	 * Use the save file in the default location.
+	 */
+	public SaveGame() {
+		this("savegame.dat");
+	}
+
+	/**
+	 * Use the save file in a given location.
+	 * 
+	 * @param filename
+	 *            The filename of the save file.
+	 */
+	public SaveGame(String filename) {
+		file = new File(filename);
+	}
+
+	/**
+	 * Determines if there is a saved game.
+	 * 
+	 * @return true if the save file exists.
+	 */
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Save a game, replacing any saved game.
+	 * 
+	 * @param sim
+	 *            The game to save.
+	 * @param clock
+	 *            The clock driving the game.
+	 * @throws IOException
+	 *             If the save file could not be written.
+	 */
+	public void save(GameSimulation sim, GameClock clock) throws IOException {
+		buffer.reset();
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(clock.getTickLength());
+		out.writeLong(clock.getTicks());
+		sim.writeState(out);
+
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(temp);
+		try {
+			buffer.writeTo(stream);
+			// the data must be on disk before the rename can be
+			stream.getChannel().force(true);
+		} finally {
+			stream.close();
+		}
+		Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load the saved game into a simulation. The save is checked in full
+	 * before the simulation is touched, so if it is broken, the simulation is
+	 * left as it was.
+	 * 
+	 * @param sim
+	 *            The simulation whose state is replaced.
+	 * @param tickLength
+	 *            The length of a tick of the clock which will drive the
+	 *            simulation, in ns.
+	 * @return A clock continuing from the time at which the game was saved.
+	 * @throws IOException
+	 *             If the save file could not be read, or is broken.
+	 */
+	public GameClock load(GameSimulation sim, long tickLength)
+			throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				bytes));
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a saved game: " + file);
+		int version = in.readUnsignedByte();
+		if (version != VERSION)
+			throw new IOException("Unsupported save version: " + version);
+		long savedTickLength = in.readLong();
+		long savedTicks = in.readLong();
+		if (savedTickLength <= 0 || savedTicks < 0)
+			throw new IOException("Invalid clock in save: " + file);
+		int header = bytes.length - in.available();
+
+		// read the state into a scratch simulation first, to check it
+		new GameSimulation().readState(new DataInputStream(
+				new ByteArrayInputStream(bytes, header, bytes.length - header)));
+		sim.readState(in);
+		return new GameClock(tickLength, savedTicks * savedTickLength
+				/ tickLength);
+	}
+
+	/**
+	 * Delete the saved game, if any.
+	 */
+	public void delete() {
+		file.delete();
+	}
+}
@@ -0,0 +1,26 @@
+package alien;
+
+/**
+ * Waits with a single Thread.sleep(). This is the original way the game loop
+ * waits, and needs the least CPU, but the sleep is only as precise as the
+ * timer of the operating system, which may overshoot by a millisecond or
+ * more.
+ * 
+ * @author Ole
+ */
+final class SleepPacer implements FramePacer {
+	public void waitUntil(long deadline) {
+		long sleepTime = deadline - System.nanoTime();
+		if (sleepTime <= 0)
+			return;
+		try {
+			Thread.sleep(sleepTime / 1000000L, // nano -> ms
+					(int) (sleepTime % 1000000L));
+		} catch (InterruptedException ex) {
+		}
+	}
+
+	public String toString() {
+		return "sleep";
+	}
+}
@@ -0,0 +1,145 @@
+package alien;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Two FrameSnapshots passed back and forth between the thread running the
+ * game ticks, which captures them, and the thread rendering them, without
+ * locks or allocation.
+ * 
+ * At any time the renderer may be reading one snapshot, and one may be
+ * pending, i.e. captured but not yet taken by the renderer. Both are kept in
+ * a single atomic int, so the two threads can never hold the same snapshot.
+ * The game thread always captures into a snapshot the renderer is not
+ * reading, taking back the pending one if need be, so it never waits for the
+ * renderer: if frames are captured faster than they are rendered, the older
+ * ones are dropped and the renderer always draws the latest.
+ * 
+ * @see FrameSnapshot
+ * @author Ole
+ */
+final class SnapshotBuffer {
+	// the index of no snapshot in the state
+	private static final int NO_SNAPSHOT = 2;
+	// the state is pending | reading << 2, each the index of a snapshot or
+	// NO_SNAPSHOT
+	private static final int READING_SHIFT = 2;
+	private static final int EMPTY = NO_SNAPSHOT | NO_SNAPSHOT << READING_SHIFT;
+
+	private final FrameSnapshot[] snapshots = { new FrameSnapshot(),
+			new FrameSnapshot() };
+	private final AtomicInteger state = new AtomicInteger(EMPTY);
+	// the thread waiting in take(), woken by publish()
+	private volatile Thread renderer;
+	// set by close() to stop the renderer waiting
+	private volatile boolean closed;
+	// the number of snapshots taken back before they were rendered
+	private volatile long dropped;
+
+	/**
+	 * Get a snapshot to capture the next frame into. Must only be called by
+	 * the game thread, and the snapshot returned must then be published.
+	 * 
+	 * @return The index of the snapshot.
+	 */
+	public int acquire() {
+		while (true) {
+			int s = state.get();
+			int pending = s & 3;
+			int reading = s >>> READING_SHIFT;
+			// a snapshot which is neither pending nor being read is free
+			for (int i = 0; i < 2; i++) {
+				if (i != pending && i != reading)
+					return i;
+			}
+			// take back the pending snapshot, unless the renderer has just
+			// taken it
+			if (state.compareAndSet(s, NO_SNAPSHOT | reading << READING_SHIFT)) {
+				dropped++;
+				return pending;
+			}
+		}
+	}
+
+	/**
+	 * Get a snapshot.
+	 * 
+	 * @param index
+	 *            The index returned by acquire() or take().
+	 * @return The snapshot.
+	 */
+	public FrameSnapshot get(int index) {
+		return snapshots[index];
+	}
+
+	/**
+	 * Hand a captured snapshot over to the renderer. Any snapshot still
+	 * pending is dropped.
+	 * 
+	 * @param index
+	 *            The index returned by acquire().
+	 */
+	public void publish(int index) {
+		while (true) {
+			int s = state.get();
+			if ((s & 3) != NO_SNAPSHOT && (s & 3) != index)
+				dropped++;
+			if (state.compareAndSet(s, index | (s & ~3)))
+				break;
+		}
+		LockSupport.unpark(renderer);
+	}
+
+	/**
+	 * Wait for a snapshot to be published and start reading it. Must only be
+	 * called by the render thread, which must release the snapshot once it
+	 * has been rendered.
+	 * 
+	 * @return The index of the snapshot, or -1 if the buffer has been closed.
+	 */
+	public int take() {
+		renderer = Thread.currentThread();
+		while (true) {
+			int s = state.get();
+			int pending = s & 3;
+			if (pending != NO_SNAPSHOT) {
+				if (state.compareAndSet(s, NO_SNAPSHOT | pending << READING_SHIFT))
+					return pending;
+			} else if (closed) {
+				return -1;
+			} else {
+				LockSupport.park(this);
+			}
+		}
+	}
+
+	/**
+	 * Stop reading a snapshot. Must only be called by the render thread.
+	 */
+	public void release() {
+		while (true) {
+			int s = state.get();
+			if (state.compareAndSet(s, (s & 3) | NO_SNAPSHOT << READING_SHIFT))
+				return;
+		}
+	}
+
+	/**
+	 * Stop the renderer waiting for snapshots.
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(renderer);
+	}
+
+	/**
+	 * Get the number of snapshots captured but never rendered, as newer ones
+	 * were captured first.
+	 * 
+	 * @return The number of snapshots dropped.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+}
@@ -1,10 +1,19 @@
 package alien;
 
-import sun.audio.*; //import the sun.audio package
 import java.io.*;
 
+import alien.stats.SoundEvent;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
 /**
- * Class used to play sounds.
+ * Class used to play sounds. Each sound has its own Clip, opened once when
+ * the class is loaded, so playing a sound only rewinds and starts it, which is
+ * cheap enough to be done during a tick.
  * 
  * @author Ole
  */
@@ -25,6 +34,7 @@ public class Sound {
 			"boom.au" };
 	private static final String SOUND_DIR = "sounds/";
 	private static byte[][] audioBytes = new byte[FILE_NAMES.length][];
+	private static Clip[] clips = new Clip[FILE_NAMES.length];
 	
 	private static boolean playSounds = true;
 
@@ -32,9 +42,18 @@ public class Sound {
 	static {
 		for (int i = 0; i < FILE_NAMES.length; i++) {
 			loadSound(i);
+			openClip(i);
 		}
 	}
 
+	/**
+	 * Load and open all the sounds, if not done already, so that it is not
+	 * done by the first call to play().
+	 */
+	public static void init() {
+		// loading the class does it all
+	}
+
 	/**
 	 * Play the sound of the given index.
 	 * 
@@ -42,19 +61,64 @@ public class Sound {
 	 *            The index of the sound to be played.
 	 */
 	public static void play(int i) {
+		SoundEvent event = new SoundEvent();
+		event.begin();
+		boolean played = playClip(i);
+		if (event.shouldCommit()) {
+			event.sound = FILE_NAMES[i];
+			event.played = played;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Start playing the sound of the given index from its beginning on its
+	 * clip. If the sound is still playing, it is restarted.
+	 * 
+	 * @param i
+	 *            The index of the sound to be played.
+	 * @return true if the sound was started, false if sounds are disabled or
+	 *         it could not be played.
+	 */
+	private static boolean playClip(int i) {
+		Clip clip = clips[i];
+		if (!playSounds || clip == null)
+			return false;
+		clip.stop();
+		clip.setFramePosition(0);
+		clip.start();
+		return true;
+	}
+
+	/**
+	 * Open the clip of the sound of a given index, from its loaded bytes.
+	 * 
+	 * @param i
+	 *            The index of the sound.
+	 */
+	private static void openClip(int i) {
 		if(!playSounds)
 			return;
 		// create an InputStream from which the sound can be read.
 		InputStream byteStream = new ByteArrayInputStream(audioBytes[i]);
-		AudioStream audioStream;
 		try {
-			// create an AudioStream from which the sound can be played
-			audioStream = new AudioStream(byteStream);
+			// create an AudioInputStream from which the sound can be played
+			AudioInputStream audioStream = AudioSystem
+					.getAudioInputStream(byteStream);
+			Clip clip = AudioSystem.getClip();
+			clip.open(audioStream);
+			clips[i] = clip;
 		} catch (IOException e) {
 			e.printStackTrace();
-			return;
+		} catch (UnsupportedAudioFileException e) {
+			e.printStackTrace();
+		} catch (LineUnavailableException e) {
+			// no sound device, e.g. on a headless machine.
+			playSounds = false;
+		} catch (IllegalArgumentException e) {
+			// no line matching the sound's format is supported.
+			playSounds = false;
 		}
-		AudioPlayer.player.start(audioStream);
 	}
 
 	/**
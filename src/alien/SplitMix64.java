@@ -0,0 +1,151 @@
+package alien;
+
+/**
+ * A splitmix64 random number generator, giving the same numbers as a
+ * java.util.SplittableRandom created with the same seed, but whose position
+ * can be read and set directly, so that a saved simulation can be brought
+ * back to it without drawing the numbers again.
+ * 
+ * The generator adds its gamma, an odd constant, to its state for every
+ * number, and mixes the state into the number returned. The gamma only
+ * depends on how the generator was made, so getState() alone tells where in
+ * its sequence the generator is.
+ * 
+ * @see GameSimulation
+ * @author Ole
+ */
+final class SplitMix64 {
+	// the gamma of generators created from a seed, as in SplittableRandom
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	// the unit of nextDouble(), 2^-53
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	private long state;
+	private final long gamma;
+
+	/**
+	 * Create a generator from a seed.
+	 * 
+	 * @param seed
+	 *            The seed.
+	 */
+	public SplitMix64(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private SplitMix64(long state, long gamma) {
+		this.state = state;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Create a new generator from the next numbers of this one, in the same
+	 * way as SplittableRandom.split().
+	 * 
+	 * @return The new generator.
+	 */
+	public SplitMix64 split() {
+		return new SplitMix64(nextLong(), mixGamma(nextState()));
+	}
+
+	/**
+	 * Get the position of the generator in its sequence.
+	 * 
+	 * @return The state.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Move the generator to a position returned by getState().
+	 * 
+	 * @param state
+	 *            The state.
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	public long nextLong() {
+		return mix64(nextState());
+	}
+
+	public int nextInt() {
+		return mix32(nextState());
+	}
+
+	/**
+	 * Get a number from origin (inclusive) to bound (exclusive), drawn in the
+	 * same way as SplittableRandom.nextInt(int, int).
+	 * 
+	 * @param origin
+	 *            The lowest number returned.
+	 * @param bound
+	 *            One more than the highest number returned, greater than
+	 *            origin.
+	 * @return The number.
+	 */
+	public int nextInt(int origin, int bound) {
+		if (origin >= bound)
+			throw new IllegalArgumentException("Bound must be greater than "
+					+ "origin: " + origin + ", " + bound);
+		int r = nextInt();
+		int n = bound - origin;
+		int m = n - 1;
+		if ((n & m) == 0) {
+			// a power of two
+			r = (r & m) + origin;
+		} else if (n > 0) {
+			// reject the numbers which would make the low ones more likely
+			for (int u = r >>> 1; u + m - (r = u % n) < 0; u = nextInt() >>> 1)
+				;
+			r += origin;
+		} else {
+			// the range does not fit in an int
+			while (r < origin || r >= bound)
+				r = nextInt();
+		}
+		return r;
+	}
+
+	/**
+	 * Get a number from 0 (inclusive) to 1 (exclusive).
+	 * 
+	 * @return The number.
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+
+	public boolean nextBoolean() {
+		return nextInt() < 0;
+	}
+
+	private long nextState() {
+		return state += gamma;
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Make the gamma of a split generator, which must be odd and have enough
+	 * bits changing between neighbours to mix well.
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
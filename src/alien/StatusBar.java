@@ -0,0 +1,185 @@
+package alien;
+
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.BoxLayout;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+/**
+ * The row of text fields below the game showing the FPS, UPS, level, score,
+ * lives and aliens left.
+ * 
+ * The values are set by the animation thread, often several times a frame
+ * when ticks are caught up or a replay is seeked, but Swing components must
+ * only be touched on the event dispatch thread. The setters therefore only
+ * store the latest values, noting whether any of them changed, and
+ * publish(), called once per frame, hands them over to the event dispatch
+ * thread if any have. At most one update is queued at a time, and it only
+ * sets the text of the fields whose value differs from the one shown, so a
+ * frame in which nothing changed costs nothing, and Swing never lays out the
+ * status bar more than once a frame.
+ * 
+ * @see GameFrame
+ * @author Ole
+ */
+public final class StatusBar extends JPanel implements Runnable {
+	// unused
+	private static final long serialVersionUID = 1L;
+
+	private JTextField fpsField; // displays frames per second
+	private JTextField upsField; // displays updates per second
+	private JTextField levelField;
+	private JTextField scoreField;
+	private JTextField livesField;
+	private JTextField alienField;
+
+	// two decimal places.
+	private DecimalFormat twoDP = new DecimalFormat("0.##");
+
+	// the latest values, set by the animation thread
+	private volatile double fps;
+	private volatile double ups;
+	private volatile int level = 1;
+	private volatile int score;
+	private volatile int lives = Constants.DEFAULT_LIVES;
+	private volatile int alienCount = Constants.ALIEN_COLS
+			* Constants.ALIEN_ROWS;
+	// true if a value has changed since the latest update was queued
+	private volatile boolean changed;
+	// true while an update is queued on the event dispatch thread
+	private final AtomicBoolean queued = new AtomicBoolean();
+
+	// the values shown, only used on the event dispatch thread
+	private double shownFPS;
+	private double shownUPS;
+	private int shownLevel = level;
+	private int shownScore = score;
+	private int shownLives = lives;
+	private int shownAlienCount = alienCount;
+
+	/**
+	 * Create the text fields, showing the values at the start of a game.
+	 */
+	public StatusBar() {
+		setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+
+		fpsField = new JTextField("FPS: 0");
+		fpsField.setEditable(false);
+		add(fpsField);
+
+		upsField = new JTextField("UPS: 0 secs");
+		upsField.setEditable(false);
+		add(upsField);
+
+		levelField = new JTextField("Level: " + level);
+		levelField.setEditable(false);
+		add(levelField);
+
+		scoreField = new JTextField("Score: " + score);
+		scoreField.setEditable(false);
+		add(scoreField);
+
+		livesField = new JTextField("Lives: " + lives);
+		livesField.setEditable(false);
+		add(livesField);
+
+		alienField = new JTextField("Aliens: " + alienCount);
+		alienField.setEditable(false);
+		add(alienField);
+	}
+
+	public void setFPS(double fps) {
+		if (fps != this.fps) {
+			this.fps = fps;
+			changed = true;
+		}
+	}
+
+	public void setUPS(double ups) {
+		if (ups != this.ups) {
+			this.ups = ups;
+			changed = true;
+		}
+	}
+
+	public void setLevel(int level) {
+		if (level != this.level) {
+			this.level = level;
+			changed = true;
+		}
+	}
+
+	public void setScore(int score) {
+		if (score != this.score) {
+			this.score = score;
+			changed = true;
+		}
+	}
+
+	public void setLives(int lives) {
+		if (lives != this.lives) {
+			this.lives = lives;
+			changed = true;
+		}
+	}
+
+	public void setAlienCount(int alienCount) {
+		if (alienCount != this.alienCount) {
+			this.alienCount = alienCount;
+			changed = true;
+		}
+	}
+
+	/**
+	 * Queue an update of the text fields on the event dispatch thread if any
+	 * value has changed since the latest update was queued, and no update
+	 * is queued already. Called by the animation thread once per frame.
+	 */
+	public void publish() {
+		if (changed && queued.compareAndSet(false, true)) {
+			changed = false;
+			SwingUtilities.invokeLater(this);
+		}
+	}
+
+	/**
+	 * Show the latest values. Runs on the event dispatch thread.
+	 */
+	public void run() {
+		// anything set from now on is picked up by the next update
+		queued.set(false);
+		double fps = this.fps;
+		if (fps != shownFPS) {
+			fpsField.setText("FPS: " + twoDP.format(fps));
+			shownFPS = fps;
+		}
+		double ups = this.ups;
+		if (ups != shownUPS) {
+			upsField.setText("UPS: " + twoDP.format(ups));
+			shownUPS = ups;
+		}
+		int level = this.level;
+		if (level != shownLevel) {
+			levelField.setText("Level: " + level);
+			shownLevel = level;
+		}
+		int score = this.score;
+		if (score != shownScore) {
+			scoreField.setText("Score: " + score);
+			shownScore = score;
+		}
+		int lives = this.lives;
+		if (lives != shownLives) {
+			livesField.setText("Lives: " + lives);
+			shownLives = lives;
+		}
+		int alienCount = this.alienCount;
+		if (alienCount != shownAlienCount) {
+			alienField.setText("Aliens: " + alienCount);
+			shownAlienCount = alienCount;
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package alien.entity;
 
 import java.awt.Graphics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import alien.Constants;
 
@@ -44,15 +47,16 @@ public class Alien extends Entity implements Movable {
 			14, 17, 17, 20, 20, 23, 23, 20, 20, 17, 17, 14, 14, 20, 20, 17, 17,
 			20, 20, 23, 23, 20, 20, 17, 17, 14, 14 };
 
-	// the direction in which the aliens are moving
-	private static int direction = Constants.RIGHT;
-	// which frame of the animation is to be displayed
-	private static boolean anim1 = true;
+	// The two animation frames, each rasterized once.
+	private static final Sprite ANIM1_SPRITE = new Sprite(ANIM1_X, ANIM1_Y,
+			Constants.ALIEN_COLOR);
+	private static final Sprite ANIM2_SPRITE = new Sprite(ANIM2_X, ANIM2_Y,
+			Constants.ALIEN_COLOR);
 
-	// x-coordinates of the polygon representing this alien
-	private int[] xPoints;
-	// y-coordinates of the polygon representing this alien
-	private int[] yPoints;
+	// the direction in which the alien is moving
+	private int direction = Constants.RIGHT;
+	// which frame of the animation is to be displayed
+	private boolean anim1 = true;
 
 	/**
 	 * Creates a new Alien whose upper-left-hand-corner is at the point (x,y).
@@ -64,59 +68,91 @@ public class Alien extends Entity implements Movable {
 	 */
 	public Alien(int x, int y) {
 		super(x, y, WIDTH, HEIGHT);
-		updatePolygon();
 	}
 
 	/**
-	 * Get the direction in which all the aliens are moving.
+	 * Get the direction in which the alien is moving.
 	 * 
-	 * @return The direction in which the aliens are moving. Either 1 for right,
+	 * @return The direction in which the alien is moving. Either 1 for right,
 	 *         or -1 for left.
 	 */
-	public static int getDirection() {
+	public int getDirection() {
 		return direction;
 	}
 
 	/**
-	 * Set the direction in which all the aliens should move.
+	 * Set the direction in which the alien should move.
 	 * 
 	 * @param newDirection
 	 *            A direction represented as an integer. 1 for right, -1 for
 	 *            left.
 	 */
-	public static void setDirection(int newDirection) {
+	public void setDirection(int newDirection) {
 		direction = newDirection;
 	}
 
 	/**
-	 * Switch the direction in which all the aliens are moving.
+	 * Switch the direction in which the alien is moving.
 	 */
-	public static void changeDirection() {
+	public void changeDirection() {
 		setDirection(getDirection() * -1);
 	}
 
 	/**
 	 * Switch to the other animation frame.
 	 */
-	public static void changeAnimation() {
+	public void changeAnimation() {
 		anim1 = !anim1;
 	}
 
+	/**
+	 * Determines which frame of the animation is displayed.
+	 * 
+	 * @return true for the first frame, false for the second.
+	 */
+	public boolean isAnim1() {
+		return anim1;
+	}
+
 	@Override
 	public void draw(Graphics g) {
-		g.setColor(Constants.ALIEN_COLOR);
-		g.fillPolygon(xPoints, yPoints, xPoints.length);
+		drawAt(g, getX(), getY(), anim1);
+	}
+
+	/**
+	 * Draw an alien at the given point, e.g. from a snapshot of the game.
+	 * 
+	 * @param g
+	 *            The graphics context to draw to.
+	 * @param x
+	 *            The x-coordinate of the left-hand side.
+	 * @param y
+	 *            The y-coordinate of the top.
+	 * @param anim1
+	 *            true to draw the first frame of the animation, false for the
+	 *            second.
+	 */
+	public static void drawAt(Graphics g, int x, int y, boolean anim1) {
+		Sprite sprite = anim1 ? ANIM1_SPRITE : ANIM2_SPRITE;
+		sprite.draw(g, x, y);
+	}
+
+	@Override
+	public int getDrawWidth() {
+		return Math.max(ANIM1_SPRITE.getWidth(), ANIM2_SPRITE.getWidth());
+	}
+
+	@Override
+	public int getDrawHeight() {
+		return Math.max(ANIM1_SPRITE.getHeight(), ANIM2_SPRITE.getHeight());
 	}
 
 	public void move() {
 		setX(getX() + getDirection() * MOVE_DISTANCE);
-		// update the polygons position
-		updatePolygon();
 	}
 
 	public void moveDown() {
 		setY(getY() + MOVE_DISTANCE);
-		updatePolygon();
 	}
 
 	/**
@@ -147,34 +183,46 @@ public class Alien extends Entity implements Movable {
 	}
 
 	/**
-	 * Update the polygon representing alien.
+	 * Fire a missile towards the player.
+	 * 
+	 * @param missiles
+	 *            The store to which the missile is added.
+	 * @return The fired missile, or null if the store is full.
 	 */
-	public void updatePolygon() {
-		int[] animX;
-		int[] animY;
-		if (anim1) {
-			animX = ANIM1_X;
-			animY = ANIM1_Y;
-		} else {
-			animX = ANIM2_X;
-			animY = ANIM2_Y;
-		}
-		xPoints = new int[animX.length];
-		yPoints = new int[animY.length];
-		for (int i = 0; i < xPoints.length; i++) {
-			xPoints[i] = getX() + animX[i];
-			yPoints[i] = getY() + animY[i];
-		}
+	public AlienMissile fire(MissileStore missiles) {
+		int x = getX() + getWidth() / 2;
+		int y = getY() + getHeight();
+		return missiles.addAlienMissile(x, y);
 	}
 
 	/**
-	 * Fire a missile towards the player.
+	 * Write the position, direction and animation frame of this alien.
 	 * 
-	 * @return The fired missile.
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
 	 */
-	public AlienMissile fire() {
-		int x = getX() + getWidth() / 2;
-		int y = getY() + getHeight();
-		return new AlienMissile(x, y);
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(getX());
+		out.writeInt(getY());
+		out.writeByte(direction);
+		out.writeBoolean(anim1);
+	}
+
+	/**
+	 * Read the position, direction and animation frame of this alien, as
+	 * written by writeState.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read.
+	 */
+	public void readState(DataInput in) throws IOException {
+		setX(in.readInt());
+		setY(in.readInt());
+		direction = in.readByte();
+		anim1 = in.readBoolean();
 	}
 }
@@ -1,6 +1,9 @@
 package alien.entity;
 
 import java.awt.Graphics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import alien.Constants;
 
@@ -11,6 +14,9 @@ import alien.Constants;
  * @author Ole
  */
 public class Barricade extends Entity {
+	// The number of BarricadeParts in a Barricade.
+	public static final int PART_COUNT = 10;
+
 	// The BarricadeParts this Barricade consists of.
 	private BarricadePart[] parts;
 
@@ -29,7 +35,7 @@ public class Barricade extends Entity {
 	public Barricade(int x, int y) {
 		// Neither the width nor the height is used.
 		super(x, y, 0, 0);
-		parts = new BarricadePart[10];
+		parts = new BarricadePart[PART_COUNT];
 		for (int row = 0; row < 2; row++) {
 			for (int col = 0; col < 4; col++) {
 				parts[row * 4 + col] = new BarricadePart(x, y);
@@ -69,4 +75,30 @@ public class Barricade extends Entity {
 	public int size() {
 		return parts.length;
 	}
+
+	/**
+	 * Write the state of each part of this barricade.
+	 * 
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		for (BarricadePart part : parts)
+			part.writeState(out);
+	}
+
+	/**
+	 * Read the state of each part of this barricade, as written by writeState.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read.
+	 */
+	public void readState(DataInput in) throws IOException {
+		for (BarricadePart part : parts)
+			part.readState(in);
+	}
 }
@@ -1,6 +1,9 @@
 package alien.entity;
 
 import java.awt.Graphics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import alien.Constants;
 
@@ -67,4 +70,32 @@ public class BarricadePart extends Entity {
 		health--;
 		setHeight(getHeight() - HEIGHT / Constants.BARRICADE_PART_MAX_HEALTH);
 	}
+
+	/**
+	 * Write how far this part has degraded.
+	 * 
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(getY());
+		out.writeInt(getHeight());
+		out.writeInt(health);
+	}
+
+	/**
+	 * Read how far this part has degraded, as written by writeState.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read.
+	 */
+	public void readState(DataInput in) throws IOException {
+		setY(in.readInt());
+		setHeight(in.readInt());
+		health = in.readInt();
+	}
 }
@@ -9,6 +9,11 @@ import java.awt.Graphics;
  * @author Ole
  */
 public abstract class Entity extends Rectangle {
+	// The grid this entity is in, if any, and the slot it occupies in it.
+	SpatialGrid grid;
+	int slot;
+	// The range of grid cells this entity overlaps.
+	int minCol, maxCol, minRow, maxRow;
 
 	/**
 	 * Create a new Entity with the given x, and y coordinate, width and height.
@@ -28,6 +33,39 @@ public abstract class Entity extends Rectangle {
 		super(x, y, width, height);
 	}
 
+	@Override
+	public void setX(int x) {
+		super.setX(x);
+		moved();
+	}
+
+	@Override
+	public void setY(int y) {
+		super.setY(y);
+		moved();
+	}
+
+	@Override
+	public void setWidth(int width) {
+		super.setWidth(width);
+		moved();
+	}
+
+	@Override
+	public void setHeight(int height) {
+		super.setHeight(height);
+		moved();
+	}
+
+	/**
+	 * Keep the grid this entity is in, if any, up to date after its position
+	 * or size has changed.
+	 */
+	private void moved() {
+		if (grid != null)
+			grid.update(this);
+	}
+
 	/**
 	 * Check if this entity has collided with another entity.
 	 * 
@@ -41,6 +79,26 @@ public abstract class Entity extends Rectangle {
 		return intersects(other);
 	}
 
+	/**
+	 * Get the width of the area this entity draws on. This is the width used
+	 * for collision detection, unless a subclass draws outside of it.
+	 * 
+	 * @return The width drawn.
+	 */
+	public int getDrawWidth() {
+		return getWidth();
+	}
+
+	/**
+	 * Get the height of the area this entity draws on. This is the height used
+	 * for collision detection, unless a subclass draws outside of it.
+	 * 
+	 * @return The height drawn.
+	 */
+	public int getDrawHeight() {
+		return getHeight();
+	}
+
 	/**
 	 * Draw this entity on a given graphical context.
 	 * 
@@ -0,0 +1,196 @@
+package alien.entity;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A fixed-capacity store of the missiles on the screen. Removing a missile
+ * moves the last missile into its place, so removal takes constant time but
+ * does not keep the order of the missiles. Removed missiles are kept for
+ * reuse, so once the store has warmed up, firing and removing missiles does
+ * not allocate any objects.
+ * 
+ * @see Missile
+ * @author Ole
+ */
+public final class MissileStore {
+	// the missiles on the screen, in slots 0 to size - 1
+	private Missile[] missiles;
+	private int size;
+	// the number of player missiles on the screen
+	private int playerMissileCount;
+
+	// removed missiles, kept for reuse
+	private AlienMissile[] freeAlienMissiles;
+	private int freeAlienMissileCount;
+	private PlayerMissile[] freePlayerMissiles;
+	private int freePlayerMissileCount;
+
+	/**
+	 * Create an empty store.
+	 * 
+	 * @param capacity
+	 *            The maximum number of missiles on the screen at once.
+	 */
+	public MissileStore(int capacity) {
+		missiles = new Missile[capacity];
+		freeAlienMissiles = new AlienMissile[capacity];
+		freePlayerMissiles = new PlayerMissile[capacity];
+	}
+
+	/**
+	 * Add an AlienMissile at the point (x,y).
+	 * 
+	 * @param x
+	 *            An x-coordinate.
+	 * @param y
+	 *            A y-coordinate.
+	 * @return The missile, or null if the store is full.
+	 */
+	public AlienMissile addAlienMissile(int x, int y) {
+		if (size == missiles.length)
+			return null;
+		AlienMissile mis;
+		if (freeAlienMissileCount > 0) {
+			mis = freeAlienMissiles[--freeAlienMissileCount];
+			freeAlienMissiles[freeAlienMissileCount] = null;
+			mis.setX(x);
+			mis.setY(y);
+		} else {
+			mis = new AlienMissile(x, y);
+		}
+		missiles[size++] = mis;
+		return mis;
+	}
+
+	/**
+	 * Add a PlayerMissile at the point (x,y).
+	 * 
+	 * @param x
+	 *            An x-coordinate.
+	 * @param y
+	 *            A y-coordinate.
+	 * @return The missile, or null if the store is full.
+	 */
+	public PlayerMissile addPlayerMissile(int x, int y) {
+		if (size == missiles.length)
+			return null;
+		PlayerMissile mis;
+		if (freePlayerMissileCount > 0) {
+			mis = freePlayerMissiles[--freePlayerMissileCount];
+			freePlayerMissiles[freePlayerMissileCount] = null;
+			mis.setX(x);
+			mis.setY(y);
+		} else {
+			mis = new PlayerMissile(x, y);
+		}
+		missiles[size++] = mis;
+		playerMissileCount++;
+		return mis;
+	}
+
+	/**
+	 * Remove the missile at the given index. The last missile is moved into
+	 * its place.
+	 * 
+	 * @param index
+	 *            An index in the range 0 to size() - 1.
+	 */
+	public void remove(int index) {
+		Missile mis = missiles[index];
+		missiles[index] = missiles[--size];
+		missiles[size] = null;
+		recycle(mis);
+	}
+
+	/**
+	 * Remove all the missiles.
+	 */
+	public void clear() {
+		while (size > 0) {
+			recycle(missiles[--size]);
+			missiles[size] = null;
+		}
+	}
+
+	/**
+	 * Keep a removed missile for reuse.
+	 * 
+	 * @param mis
+	 *            A missile which has been removed.
+	 */
+	private void recycle(Missile mis) {
+		if (mis instanceof PlayerMissile) {
+			playerMissileCount--;
+			freePlayerMissiles[freePlayerMissileCount++] = (PlayerMissile) mis;
+		} else {
+			freeAlienMissiles[freeAlienMissileCount++] = (AlienMissile) mis;
+		}
+	}
+
+	public Missile get(int index) {
+		return missiles[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return missiles.length;
+	}
+
+	/**
+	 * Get number of player missiles on the screen.
+	 * 
+	 * @return The number of player missiles on the screen.
+	 */
+	public int getPlayerMissileCount() {
+		return playerMissileCount;
+	}
+
+	/**
+	 * Write the type and position of every missile, in order.
+	 * 
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			Missile mis = missiles[i];
+			out.writeBoolean(mis instanceof PlayerMissile);
+			out.writeInt(mis.getX());
+			out.writeInt(mis.getY());
+		}
+	}
+
+	/**
+	 * Replace the missiles in the store with the ones written by writeState,
+	 * in the same order.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read, or holds more missiles than
+	 *             the store can.
+	 */
+	public void readState(DataInput in) throws IOException {
+		clear();
+		int count = in.readInt();
+		if (count < 0 || count > missiles.length)
+			throw new IOException("Invalid missile count: " + count);
+		for (int i = 0; i < count; i++) {
+			boolean player = in.readBoolean();
+			int x = in.readInt();
+			int y = in.readInt();
+			if (player)
+				addPlayerMissile(x, y);
+			else
+				addAlienMissile(x, y);
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package alien.entity;
 
 import java.awt.Graphics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * The Player class is used to represent the control and representation of the
@@ -13,7 +16,6 @@ import java.awt.Graphics;
  */
 
 import alien.Constants;
-import alien.Sound;
 
 /**
  * The Player class is used to represent the behaviour and representation of the
@@ -28,9 +30,9 @@ public class Player extends Entity {
 	private static final int MOVE_DISTANCE = 2;
 	private static final int[] POLYGON_X = { 11, 17, 17, 28, 28, 0, 0, 11 };
 	private static final int[] POLYGON_Y = { 0, 0, 5, 5, 24, 24, 5, 5 };
+	private static final Sprite SPRITE = new Sprite(POLYGON_X, POLYGON_Y,
+			Constants.PLAYER_COLOR);
 
-	private int[] xPoints;
-	private int[] yPoints;
 	private int lives = Constants.DEFAULT_LIVES;
 
 	/**
@@ -43,19 +45,6 @@ public class Player extends Entity {
 	 */
 	public Player(int x, int y) {
 		super(x, y, WIDTH, HEIGHT);
-		xPoints = new int[POLYGON_X.length];
-		yPoints = new int[POLYGON_Y.length];
-		updatePolygon();
-	}
-
-	/**
-	 * Update the polygon representing the player.
-	 */
-	private void updatePolygon() {
-		for (int i = 0; i < xPoints.length; i++) {
-			xPoints[i] = POLYGON_X[i] + getX();
-			yPoints[i] = POLYGON_Y[i] + getY();
-		}
 	}
 
 	/**
@@ -103,7 +92,6 @@ public class Player extends Entity {
 				x = 0;
 			setX(x);
 		}
-		updatePolygon();
 	}
 
 	/**
@@ -117,27 +105,75 @@ public class Player extends Entity {
 				x = Constants.PANEL_WIDTH - WIDTH;
 			setX(x);
 		}
-		updatePolygon();
 	}
 
 	/**
 	 * Fire a missile.
 	 * 
-	 * @return The fired missile.
+	 * @param missiles
+	 *            The store to which the missile is added.
+	 * @return The fired missile, or null if the store is full.
 	 */
-	public Missile fire() {
-		// play a laser sound.
-		Sound.play(Sound.LASER);
+	public PlayerMissile fire(MissileStore missiles) {
 		int x = getX() + getWidth() / 2 - Missile.WIDTH / 2;
 		int y = getY() - 1;
-		return new PlayerMissile(x, y);
+		return missiles.addPlayerMissile(x, y);
+	}
+
+	@Override
+	public int getDrawWidth() {
+		return SPRITE.getWidth();
+	}
+
+	@Override
+	public int getDrawHeight() {
+		return SPRITE.getHeight();
 	}
 
 	@Override
 	public void draw(Graphics g) {
 		if (!isAlive())
 			return;
-		g.setColor(Constants.PLAYER_COLOR);
-		g.fillPolygon(xPoints, yPoints, xPoints.length);
+		drawAt(g, getX(), getY());
+	}
+
+	/**
+	 * Draw the player at the given point, e.g. from a snapshot of the game.
+	 * 
+	 * @param g
+	 *            The graphics context to draw to.
+	 * @param x
+	 *            The x-coordinate of the left-hand side.
+	 * @param y
+	 *            The y-coordinate of the top.
+	 */
+	public static void drawAt(Graphics g, int x, int y) {
+		SPRITE.draw(g, x, y);
+	}
+
+	/**
+	 * Write the position and lives of the player.
+	 * 
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(getX());
+		out.writeInt(lives);
+	}
+
+	/**
+	 * Read the position and lives of the player, as written by writeState.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read.
+	 */
+	public void readState(DataInput in) throws IOException {
+		setX(in.readInt());
+		lives = in.readInt();
 	}
 }
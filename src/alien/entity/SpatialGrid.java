@@ -0,0 +1,205 @@
+package alien.entity;
+
+/**
+ * A uniform grid over the playfield, used as a broadphase for collision
+ * detection. Each entity in the grid occupies a numbered slot, and each cell
+ * stores the slots of the entities overlapping it as a bit set. Entities keep
+ * their cells up to date themselves whenever their position or size changes,
+ * so moving an entity only touches the grid when it crosses into other cells.
+ * 
+ * A query collects the slots of all entities in the cells overlapped by a
+ * rectangle. The candidates are then visited in ascending slot order, which
+ * lets the owner of the grid decide which collision takes precedence by the
+ * way it numbers its slots. Entities outside the grid are kept in the nearest
+ * cells along the edge.
+ * 
+ * @see Entity
+ * @author Ole
+ */
+public final class SpatialGrid {
+	// The cells are CELL_SIZE x CELL_SIZE pixels (1 << CELL_SHIFT).
+	private static final int CELL_SHIFT = 5;
+
+	// number of columns and rows of cells
+	private int cols;
+	private int rows;
+	// number of longs needed to store one bit per slot
+	private int words;
+	// the bit sets of the cells, words longs per cell, row by row
+	private long[] cells;
+	// the entity occupying each slot, or null if the slot is empty
+	private Entity[] entities;
+	// the bit set of candidates found by the latest query
+	private long[] candidates;
+
+	/**
+	 * Create an empty grid covering the area from (0,0) to (width,height).
+	 * 
+	 * @param width
+	 *            The width of the area covered.
+	 * @param height
+	 *            The height of the area covered.
+	 * @param slots
+	 *            The maximum number of entities in the grid.
+	 */
+	public SpatialGrid(int width, int height, int slots) {
+		cols = ((width - 1) >> CELL_SHIFT) + 1;
+		rows = ((height - 1) >> CELL_SHIFT) + 1;
+		words = ((slots - 1) >> 6) + 1;
+		cells = new long[cols * rows * words];
+		entities = new Entity[slots];
+		candidates = new long[words];
+	}
+
+	/**
+	 * Put an entity in the given slot, removing any entity which was there.
+	 * 
+	 * @param slot
+	 *            A slot.
+	 * @param entity
+	 *            The entity, which must not be in any grid already.
+	 */
+	public void put(int slot, Entity entity) {
+		remove(slot);
+		entities[slot] = entity;
+		entity.grid = this;
+		entity.slot = slot;
+		entity.minCol = col(entity.getX());
+		entity.maxCol = col(entity.getX() + entity.getWidth() - 1);
+		entity.minRow = row(entity.getY());
+		entity.maxRow = row(entity.getY() + entity.getHeight() - 1);
+		mark(entity, true);
+	}
+
+	/**
+	 * Remove the entity in the given slot, if any.
+	 * 
+	 * @param slot
+	 *            A slot.
+	 */
+	public void remove(int slot) {
+		Entity entity = entities[slot];
+		if (entity == null)
+			return;
+		mark(entity, false);
+		entity.grid = null;
+		entities[slot] = null;
+	}
+
+	/**
+	 * Get the entity in a given slot.
+	 * 
+	 * @param slot
+	 *            A slot.
+	 * @return The entity, or null if the slot is empty.
+	 */
+	public Entity get(int slot) {
+		return entities[slot];
+	}
+
+	/**
+	 * Move an entity to the cells it now overlaps. Called by the entity
+	 * whenever its position or size changes.
+	 * 
+	 * @param entity
+	 *            An entity in this grid.
+	 */
+	void update(Entity entity) {
+		int minCol = col(entity.getX());
+		int maxCol = col(entity.getX() + entity.getWidth() - 1);
+		int minRow = row(entity.getY());
+		int maxRow = row(entity.getY() + entity.getHeight() - 1);
+		if (minCol == entity.minCol && maxCol == entity.maxCol
+				&& minRow == entity.minRow && maxRow == entity.maxRow)
+			return;
+		mark(entity, false);
+		entity.minCol = minCol;
+		entity.maxCol = maxCol;
+		entity.minRow = minRow;
+		entity.maxRow = maxRow;
+		mark(entity, true);
+	}
+
+	/**
+	 * Find the entities in the cells overlapped by a rectangle. The candidates
+	 * can then be visited with nextCandidate.
+	 * 
+	 * @param r
+	 *            A rectangle, e.g. a missile.
+	 */
+	public void query(Rectangle r) {
+		for (int w = 0; w < words; w++)
+			candidates[w] = 0L;
+		int minCol = col(r.getX());
+		int maxCol = col(r.getX() + r.getWidth() - 1);
+		int minRow = row(r.getY());
+		int maxRow = row(r.getY() + r.getHeight() - 1);
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int col = minCol; col <= maxCol; col++) {
+				int cell = (row * cols + col) * words;
+				for (int w = 0; w < words; w++)
+					candidates[w] |= cells[cell + w];
+			}
+		}
+	}
+
+	/**
+	 * Get the lowest candidate slot found by the latest query which is not
+	 * lower than the given slot.
+	 * 
+	 * @param slot
+	 *            The slot from which to start searching.
+	 * @return The slot of the next candidate, or -1 if there are no more.
+	 */
+	public int nextCandidate(int slot) {
+		int w = slot >> 6;
+		if (w >= words)
+			return -1;
+		long word = candidates[w] & (-1L << slot);
+		while (word == 0) {
+			if (++w == words)
+				return -1;
+			word = candidates[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Set or clear the bit of an entity in all the cells it overlaps.
+	 * 
+	 * @param entity
+	 *            An entity in this grid.
+	 * @param set
+	 *            true to set the bit, false to clear it.
+	 */
+	private void mark(Entity entity, boolean set) {
+		int w = entity.slot >> 6;
+		long bit = 1L << entity.slot;
+		for (int row = entity.minRow; row <= entity.maxRow; row++) {
+			for (int col = entity.minCol; col <= entity.maxCol; col++) {
+				int cell = (row * cols + col) * words + w;
+				if (set)
+					cells[cell] |= bit;
+				else
+					cells[cell] &= ~bit;
+			}
+		}
+	}
+
+	/**
+	 * Get the column of the cell containing an x-coordinate, clamped to the
+	 * grid.
+	 */
+	private int col(int x) {
+		int col = x >> CELL_SHIFT;
+		return col < 0 ? 0 : (col >= cols ? cols - 1 : col);
+	}
+
+	/**
+	 * Get the row of the cell containing a y-coordinate, clamped to the grid.
+	 */
+	private int row(int y) {
+		int row = y >> CELL_SHIFT;
+		return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+	}
+}
@@ -1,12 +1,15 @@
 package alien.entity;
 
 import java.awt.Graphics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import alien.Constants;
 
 /**
  * The SpecialAlien class defines the behaviour of the special alien. It
- * randomly appears in the upper left or right corner and moves to the other
+ * appears in the upper left or right corner and moves to the other
  * side of the screen.
  * 
  * @author os75
@@ -24,48 +27,83 @@ public class SpecialAlien extends Entity implements Movable {
 	private static final int[] POLYGON_Y = { 4, 4, 8, 8, 11, 11, 14, 14, 18,
 			18, 21, 21, 24, 24, 28, 28, 24, 24, 21, 21, 24, 24, 21, 21, 24, 24,
 			28, 28, 24, 24, 21, 21, 18, 18, 14, 14, 11, 11, 8, 8 };
-
-	private int[] xPoints;
-	private int[] yPoints;
+	private static final Sprite SPRITE = new Sprite(POLYGON_X, POLYGON_Y,
+			Constants.SPECIAL_ALIEN_COLOR);
 
 	/**
-	 * Create a special alien which randomly appears in the left or right corner
-	 * of the screen.
+	 * Create a special alien which appears in the left or right corner of the
+	 * screen and moves towards the other side.
+	 * 
+	 * @param direction
+	 *            Constants.RIGHT to appear on the left side, or
+	 *            Constants.LEFT to appear on the right side.
 	 */
-	public SpecialAlien() {
+	public SpecialAlien(int direction) {
 		super(1 - WIDTH, Y, WIDTH, HEIGTH);
-		direction = randomDirection();
+		this.direction = direction;
 		if (direction == Constants.LEFT) {
 			setX(Constants.PANEL_WIDTH - 1);
 		}
-		xPoints = new int[POLYGON_X.length];
-		yPoints = new int[POLYGON_Y.length];
-		updatePolygon();
 	}
 
-	private int randomDirection() {
-		if (Math.random() < 0.5)
-			return Constants.RIGHT;
-		else
-			return Constants.LEFT;
+	@Override
+	public int getDrawWidth() {
+		return SPRITE.getWidth();
 	}
 
-	public void updatePolygon() {
-		for (int i = 0; i < xPoints.length; i++) {
-			xPoints[i] = POLYGON_X[i] + getX();
-			yPoints[i] = POLYGON_Y[i] + getY();
-		}
+	@Override
+	public int getDrawHeight() {
+		return SPRITE.getHeight();
 	}
 
 	@Override
 	public void draw(Graphics g) {
-		g.setColor(Constants.SPECIAL_ALIEN_COLOR);
-		g.fillPolygon(xPoints, yPoints, xPoints.length);
+		drawAt(g, getX(), getY());
+	}
+
+	/**
+	 * Draw a special alien at the given point, e.g. from a snapshot of the
+	 * game.
+	 * 
+	 * @param g
+	 *            The graphics context to draw to.
+	 * @param x
+	 *            The x-coordinate of the left-hand side.
+	 * @param y
+	 *            The y-coordinate of the top.
+	 */
+	public static void drawAt(Graphics g, int x, int y) {
+		SPRITE.draw(g, x, y);
 	}
 
 	public void move() {
 		setX(getX() + MOVE_DISTANCE * direction);
-		updatePolygon();
 	}
 
+	/**
+	 * Write the position and direction of the special alien.
+	 * 
+	 * @param out
+	 *            The output to write to.
+	 * @throws IOException
+	 *             If the output could not be written to.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(getX());
+		out.writeByte(direction);
+	}
+
+	/**
+	 * Read the position and direction of the special alien, as written by
+	 * writeState.
+	 * 
+	 * @param in
+	 *            The input to read from.
+	 * @throws IOException
+	 *             If the input could not be read.
+	 */
+	public void readState(DataInput in) throws IOException {
+		setX(in.readInt());
+		direction = in.readByte();
+	}
 }
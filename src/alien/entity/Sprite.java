@@ -0,0 +1,100 @@
+package alien.entity;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * A filled polygon which is rasterized once into an image, so that drawing it
+ * is a single image blit instead of a polygon fill. The image is created the
+ * first time the sprite is drawn, compatible with the device being drawn to,
+ * so Java2D can keep an accelerated copy of it. Until then a sprite is just
+ * the polygon, so entities which are never drawn (e.g. in a headless
+ * simulation) never touch the graphics system.
+ * 
+ * @author Ole
+ */
+public final class Sprite {
+	// the points of the polygon, relative to the upper-left-hand corner
+	private int[] xPoints;
+	private int[] yPoints;
+	private Color color;
+	// the size of the bounding box of the polygon
+	private int width;
+	private int height;
+	// the rasterized polygon, created on the first draw
+	private Image image;
+
+	/**
+	 * Create a sprite of a filled polygon.
+	 * 
+	 * @param xPoints
+	 *            The x-coordinates of the points of the polygon.
+	 * @param yPoints
+	 *            The y-coordinates of the points of the polygon.
+	 * @param color
+	 *            The color with which the polygon is filled.
+	 */
+	public Sprite(int[] xPoints, int[] yPoints, Color color) {
+		this.xPoints = xPoints;
+		this.yPoints = yPoints;
+		this.color = color;
+		for (int i = 0; i < xPoints.length; i++) {
+			width = Math.max(width, xPoints[i] + 1);
+			height = Math.max(height, yPoints[i] + 1);
+		}
+	}
+
+	/**
+	 * Draw the sprite with its upper-left-hand corner at the point (x,y).
+	 * 
+	 * @param g
+	 *            The graphics context to which the sprite is to be drawn.
+	 * @param x
+	 *            An x-coordinate.
+	 * @param y
+	 *            A y-coordinate.
+	 */
+	public void draw(Graphics g, int x, int y) {
+		if (image == null)
+			image = rasterize(g);
+		g.drawImage(image, x, y, null);
+	}
+
+	/**
+	 * Rasterize the polygon into an image with a transparent background.
+	 * 
+	 * @param g
+	 *            The graphics context the image is going to be drawn to.
+	 * @return The image.
+	 */
+	private Image rasterize(Graphics g) {
+		BufferedImage img;
+		GraphicsConfiguration gc = null;
+		if (g instanceof Graphics2D)
+			gc = ((Graphics2D) g).getDeviceConfiguration();
+		if (gc != null)
+			img = gc.createCompatibleImage(width, height,
+					Transparency.BITMASK);
+		else
+			img = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+		Graphics ig = img.getGraphics();
+		ig.setColor(color);
+		ig.fillPolygon(xPoints, yPoints, xPoints.length);
+		ig.dispose();
+		return img;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
@@ -1,17 +1,30 @@
 package alien.hiscore;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
-import javax.swing.JComponent;
-import javax.swing.JOptionPane;
+import alien.stats.HiscoreSaveEvent;
 
+/**
+ * The best scores, kept in memory and in a ScoreLog on disk which can be
+ * shared by several game instances. Scores are added in memory, and appended
+ * to the log by save(), which also picks up the scores added by other
+ * instances in the meantime.
+ * 
+ * Scores without a name, i.e. with an empty name, are kept in the log for the
+ * Leaderboard, but never shown in the table.
+ * 
+ * Every game is also added to a ScoreSketch, which tells how a score
+ * compares to all the games ever played, even if they are too many for the
+ * Leaderboard.
+ * 
+ * @see ScoreLog
+ * @see Leaderboard
+ * @see ScoreSketch
+ * @see HiscoreWriter
+ * @author Ole
+ */
 public class Hiscore {
 	private static final int LENGTH = 10;
 	
@@ -21,7 +34,13 @@ public class Hiscore {
 	 */
 	
 	private Score[] scores = new Score[LENGTH];
-	private String filename;
+	// the hiscore file and its log
+	private ScoreLog log;
+	// scores added since the latest save
+	private List<Score> pending = new ArrayList<Score>();
+	// the sketch of every game saved, and of the games added since
+	private ScoreSketch games = new ScoreSketch();
+	private ScoreSketch pendingGames = new ScoreSketch();
 
 	/**
 	 * Initialise and load the hiscores file in the default location.
@@ -46,7 +65,7 @@ public class Hiscore {
 	 *             If the hiscore file is formatted incorrectly.
 	 */
 	public Hiscore(String filename) throws IOException, ScoreFormatException {
-		this.filename = filename;
+		log = new ScoreLog(filename);
 		load();
 	}
 
@@ -59,41 +78,113 @@ public class Hiscore {
 	 *             If the hiscore file is formatted incorrectly.
 	 */
 	public void load() throws IOException, ScoreFormatException {
-		File file = new File(filename);
-		if (!file.exists()) {
-			file.createNewFile();
-			return;
-		}
-		BufferedReader in = new BufferedReader(new FileReader(file));
-		int i = 0;
-		while (in.ready() && i < scores.length) {
-			scores[i] = Score.fromLine(in.readLine());
-			i++;
+		List<Score> all = new ArrayList<Score>();
+		log.read(all);
+		ScoreSketch sketch = log.readSketch();
+		synchronized (this) {
+			rebuild(all);
+			games = sketch;
 		}
-		if (in.ready()) {
-			throw new ScoreFormatException(
-					"Length of hiscore file is too long.");
-		}
-		in.close();
 	}
 
 	/**
-	 * Save hiscores to file specified in constructor.
+	 * Load every score ever added, including those which are not among the
+	 * best, into a new leaderboard. This can take a while when many games have
+	 * been played, so it is best done in the background.
+	 * 
+	 * @return The leaderboard.
+	 * @throws IOException
+	 *             If a reading error is encountered.
+	 * @throws ScoreFormatException
+	 *             If the hiscore file is formatted incorrectly.
+	 */
+	public Leaderboard loadLeaderboard() throws IOException,
+			ScoreFormatException {
+		Leaderboard board = new Leaderboard();
+		log.readAll(board);
+		return board;
+	}
+
+	/**
+	 * Append the scores added since the latest save to the log specified in
+	 * constructor, and pick up the scores added by other game instances. Can
+	 * be called from any thread, see HiscoreWriter.
 	 * 
 	 * @throws IOException
+	 *             If a reading or writing error is encountered, in which case
+	 *             the scores are kept for the next save.
+	 * @throws ScoreFormatException
+	 *             If the hiscore file is formatted incorrectly.
 	 */
-	public void save() throws IOException {
+	public void save() throws IOException, ScoreFormatException {
+		List<Score> added;
+		ScoreSketch addedGames;
+		synchronized (this) {
+			if (pending.isEmpty() && pendingGames.isEmpty())
+				return;
+			added = new ArrayList<Score>(pending);
+			addedGames = pendingGames;
+			pendingGames = new ScoreSketch();
+		}
+		HiscoreSaveEvent event = new HiscoreSaveEvent();
+		event.begin();
 		try {
-			PrintWriter out = new PrintWriter(new BufferedWriter(
-					new FileWriter(filename)));
-			for (int i = 0; i < scores.length && scores[i] != null; i++) {
-				out.println(scores[i]);
+			saveAdded(added, addedGames);
+			event.succeeded = true;
+		} finally {
+			if (event.shouldCommit()) {
+				event.scores = added.size();
+				event.games = addedGames.getScores().getCount();
+				event.commit();
 			}
-			out.close();
-		} catch (FileNotFoundException e) {
 		}
 	}
 
+	/**
+	 * Merge the games taken from pendingGames into the sketch file, and append
+	 * the scores taken from pending to the log.
+	 */
+	private void saveAdded(List<Score> added, ScoreSketch addedGames)
+			throws IOException, ScoreFormatException {
+		if (!addedGames.isEmpty()) {
+			ScoreSketch sketch;
+			try {
+				sketch = log.mergeSketch(addedGames);
+			} catch (IOException e) {
+				synchronized (this) {
+					pendingGames.merge(addedGames);
+				}
+				throw e;
+			}
+			synchronized (this) {
+				games = sketch;
+			}
+		}
+		if (added.isEmpty())
+			return;
+		List<Score> all = new ArrayList<Score>();
+		log.append(added, all, LENGTH);
+		synchronized (this) {
+			// keep any scores added while the log was written
+			pending.subList(0, added.size()).clear();
+			all.addAll(pending);
+			rebuild(all);
+		}
+	}
+
+	/**
+	 * Replace the hiscores with the best of the given scores.
+	 * 
+	 * @param all
+	 *            Any number of scores.
+	 */
+	private void rebuild(List<Score> all) {
+		for (int i = 0; i < scores.length; i++)
+			scores[i] = null;
+		for (Score score : all)
+			insert(scores, score);
+	}
+
 	/**
 	 * Returns true if the score is eligible to be added to the hiscore table.
 	 * 
@@ -102,7 +193,7 @@ public class Hiscore {
 	 * @return True if the hiscore list is not full or the score passed in is
 	 *         higher than any one entry
 	 */
-	public boolean eligible(int score) {
+	public synchronized boolean eligible(int score) {
 		if (score <= 0)
 			return false;
 		if (scores[scores.length - 1] == null)
@@ -117,12 +208,70 @@ public class Hiscore {
 	 * Add Score with given player name and points.
 	 * 
 	 * @param playerName
-	 *            A player's name.
+	 *            A player's name, or an empty string to only keep the score
+	 *            in the log.
 	 * @param points
 	 *            A score.
 	 */
-	public void add(String playerName, int points) {
+	public synchronized void add(String playerName, int points) {
 		Score newScore = new Score(playerName, points);
+		pending.add(newScore);
+		insert(scores, newScore);
+	}
+
+	/**
+	 * Add a finished game to the sketch of every game.
+	 * 
+	 * @param points
+	 *            The final score.
+	 * @param level
+	 *            The level reached.
+	 */
+	public synchronized void addGame(int points, int level) {
+		pendingGames.add(points, level);
+	}
+
+	/**
+	 * Estimate the fraction of all the games added which scored less than a
+	 * given score.
+	 * 
+	 * @param points
+	 *            A score.
+	 * @return The fraction, from 0 to 1, or 0 if no games have been added.
+	 */
+	public synchronized double beaten(int points) {
+		long count = games.getScores().getCount()
+				+ pendingGames.getScores().getCount();
+		if (count == 0)
+			return 0.0;
+		return (double) (games.getScores().countBelow(points) + pendingGames
+				.getScores().countBelow(points)) / count;
+	}
+
+	/**
+	 * Get the number of games added, including those added by other game
+	 * instances up to the latest load or save.
+	 * 
+	 * @return The number of games.
+	 */
+	public synchronized long getGameCount() {
+		return games.getScores().getCount()
+				+ pendingGames.getScores().getCount();
+	}
+
+	/**
+	 * Insert a score into a table of scores sorted from best to worst, if it
+	 * is good enough and has a name. The worst score drops off the end.
+	 * 
+	 * @param scores
+	 *            A sorted table of scores, null at the end if not full.
+	 * @param newScore
+	 *            A score.
+	 */
+	static void insert(Score[] scores, Score newScore) {
+		if (newScore.getName().length() == 0)
+			return;
+		int points = newScore.getScore();
 		int index = -1;
 		for (int i = 0; i < scores.length; i++) {
 			if (scores[i] == null || points > scores[i].getScore()) {
@@ -138,30 +287,7 @@ public class Hiscore {
 		scores[index] = newScore;
 	}
 
-	/**
-	 * Read name of player from a popup window, and add score to hiscores.
-	 * 
-	 * @param owner
-	 *            The owner component.
-	 * @param points
-	 */
-	public void add(JComponent owner, int points) {
-		String name = JOptionPane.showInputDialog(owner,
-				"Please enter a nickname (up to 7 characters).", "Hiscore!",
-				JOptionPane.QUESTION_MESSAGE);
-		if (name == null)
-			return;
-		if (name.length() > 7) {
-			JOptionPane.showMessageDialog(owner,
-					"The name entered is too long, please try again.",
-					"Name too long", JOptionPane.INFORMATION_MESSAGE);
-			add(owner, points);
-		} else {
-			add(name, points);
-		}
-	}
-
-	public Score getScore(int index) {
+	public synchronized Score getScore(int index) {
 		return scores[index];
 	}
 
@@ -0,0 +1,94 @@
+package alien.hiscore;
+
+import java.io.IOException;
+
+/**
+ * Saves hiscores on a background thread, so that the game never waits for
+ * the disk. A call to save only marks the hiscores as changed; the writer
+ * then waits BATCH_DELAY ms for further changes before writing them all at
+ * once. Each write appends the new scores to the append-only ScoreLog, which
+ * compacts itself into the hiscore file once it has grown long enough, see
+ * Hiscore.save().
+ * 
+ * @see Hiscore
+ * @author Ole
+ */
+public final class HiscoreWriter implements Runnable {
+	// time to wait for more changes before writing, in ms
+	private static final long BATCH_DELAY = 500L;
+	// time close() waits for the last write to finish, in ms
+	private static final long CLOSE_TIMEOUT = 2000L;
+
+	private final Hiscore scores;
+	private final Thread thread;
+	// true if the hiscores have changed since they were last written
+	private boolean pending = false;
+	private boolean closed = false;
+
+	/**
+	 * Create a writer and start its thread.
+	 * 
+	 * @param scores
+	 *            The hiscores to save.
+	 */
+	public HiscoreWriter(Hiscore scores) {
+		this.scores = scores;
+		thread = new Thread(this, "Hiscore writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Ask for the hiscores to be saved. Returns immediately.
+	 */
+	public synchronized void save() {
+		pending = true;
+		notifyAll();
+	}
+
+	/**
+	 * Write any changes which have not been written yet without waiting for
+	 * the batch delay, and stop the writer. Waits for the write to finish,
+	 * so it should only be called when the game is closing.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			thread.join(CLOSE_TIMEOUT);
+		} catch (InterruptedException e) {
+		}
+	}
+
+	public void run() {
+		while (true) {
+			synchronized (this) {
+				try {
+					while (!pending && !closed)
+						wait();
+					// let more changes arrive before writing
+					long end = System.currentTimeMillis() + BATCH_DELAY;
+					long left = BATCH_DELAY;
+					while (!closed && left > 0) {
+						wait(left);
+						left = end - System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					closed = true;
+				}
+				if (!pending)
+					return; // closed, nothing left to write
+				pending = false;
+			}
+			try {
+				scores.save();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (ScoreFormatException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
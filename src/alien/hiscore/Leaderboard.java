@@ -0,0 +1,427 @@
+package alien.hiscore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Every score ever played, ranked. Unlike Hiscore, which only keeps the best
+ * few, a leaderboard can hold millions of scores, and still add a score or
+ * find the rank of a score in O(log n) time.
+ * 
+ * The scores are kept in an indexed skip list, ordered from best to worst,
+ * with equal scores in the order they were added. Each link in the list also
+ * stores how many entries it skips, so the rank of an entry is the sum of the
+ * links followed to reach it. To keep the memory use down there is no object
+ * per entry: each entry is an index into a set of primitive arrays, and the
+ * names are stored back to back in a single char array.
+ * 
+ * A leaderboard is not thread safe.
+ * 
+ * @see ScoreLog
+ * @author Ole
+ */
+public final class Leaderboard {
+	// the chance of an entry being linked at the next level is 1 in 4
+	private static final int MAX_LEVEL = 16;
+	private static final int HEAD = 0;
+	// the end of the list
+	private static final int NIL = -1;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	// the fields of a link
+	private static final int TARGET = 0;
+	private static final int SPAN = 1;
+	private static final int SCORE = 2;
+	private static final int ENTRY = 3;
+	private static final int LINK_SIZE = 4;
+
+	// --- ENTRIES, indexed by entry, entry 0 being the head of the list ---
+	private int[] scores;
+	// where the name of each entry starts in names, and its length
+	private int[] nameStart;
+	private byte[] nameLength;
+	// where the links of each entry start in links
+	private int[] linkStart;
+	private int entries;
+
+	// the names of the entries, back to back
+	private char[] names;
+	private int namesSize;
+
+	// --- LINKS, one per level each entry is linked at ---
+	// Each link is LINK_SIZE ints: where the links of the entry it points to
+	// start, or NIL; the number of places it skips, i.e. the difference in
+	// rank between the entry it points to and the entry it belongs to; and
+	// the score and the index of the entry it points to. Following a link
+	// then only touches the link itself.
+	private int[] links;
+	private int linksSize;
+
+	// the number of levels in use
+	private int level = 1;
+	// the state of the xorshift generator for the heights of the entries
+	private long random = 0x2545f4914f6cdd1dL;
+	// the last link before the insertion point at each level, and the rank
+	// of the entry it belongs to
+	private int[] update = new int[MAX_LEVEL];
+	private int[] updateRank = new int[MAX_LEVEL];
+	// buffer for the streaming loader
+	private byte[] nameBytes = new byte[255];
+
+	/**
+	 * Create an empty leaderboard.
+	 */
+	public Leaderboard() {
+		scores = new int[INITIAL_CAPACITY];
+		nameStart = new int[INITIAL_CAPACITY];
+		nameLength = new byte[INITIAL_CAPACITY];
+		linkStart = new int[INITIAL_CAPACITY];
+		names = new char[INITIAL_CAPACITY * 8];
+		links = new int[INITIAL_CAPACITY * 2 * LINK_SIZE];
+		// the head is linked at every level
+		newEntry(Integer.MAX_VALUE, MAX_LEVEL);
+		for (int l = 0; l < MAX_LEVEL; l++)
+			links[l * LINK_SIZE + TARGET] = NIL;
+	}
+
+	/**
+	 * Get the number of scores on the leaderboard.
+	 * 
+	 * @return The number of scores.
+	 */
+	public int size() {
+		return entries - 1;
+	}
+
+	/**
+	 * Add a score.
+	 * 
+	 * @param playerName
+	 *            The player's name, at most 255 characters of which are kept.
+	 * @param points
+	 *            The score.
+	 * @return The entry of the score.
+	 */
+	public int add(String playerName, int points) {
+		int entry = insert(points);
+		int length = Math.min(playerName.length(), 255);
+		ensureNames(length);
+		playerName.getChars(0, length, names, namesSize);
+		nameStart[entry] = namesSize;
+		nameLength[entry] = (byte) length;
+		namesSize += length;
+		return entry;
+	}
+
+	/**
+	 * Get the rank a new score would get if it was added now, i.e. one more
+	 * than the number of scores at least as good.
+	 * 
+	 * @param points
+	 *            A score.
+	 * @return The rank, starting at 1 for the best score.
+	 */
+	public int rank(int points) {
+		int x = linkStart[HEAD];
+		int rank = 0;
+		for (int l = level - 1; l >= 0; l--) {
+			int link = x + l * LINK_SIZE;
+			while (links[link + TARGET] != NIL && links[link + SCORE] >= points) {
+				rank += links[link + SPAN];
+				x = links[link + TARGET];
+				link = x + l * LINK_SIZE;
+			}
+		}
+		return rank + 1;
+	}
+
+	/**
+	 * Get the rank of an entry.
+	 * 
+	 * @param entry
+	 *            An entry.
+	 * @return The rank, starting at 1 for the best score.
+	 */
+	public int getRank(int entry) {
+		int points = scores[entry];
+		int x = linkStart[HEAD];
+		int rank = 0;
+		for (int l = level - 1; l >= 0; l--) {
+			int link = x + l * LINK_SIZE;
+			while (links[link + TARGET] != NIL
+					&& (links[link + SCORE] > points || (links[link + SCORE] == points
+							&& links[link + ENTRY] <= entry))) {
+				rank += links[link + SPAN];
+				x = links[link + TARGET];
+				link = x + l * LINK_SIZE;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Find the entry with a given rank. The entries around it can then be
+	 * visited with nextEntry, e.g. to show the scores around a player's.
+	 * 
+	 * @param rank
+	 *            A rank from 1 to size().
+	 * @return The entry with the given rank, or -1 if there is none.
+	 */
+	public int select(int rank) {
+		if (rank < 1 || rank > size())
+			return NIL;
+		int x = linkStart[HEAD];
+		int entry = HEAD;
+		int traversed = 0;
+		for (int l = level - 1; l >= 0; l--) {
+			int link = x + l * LINK_SIZE;
+			while (links[link + TARGET] != NIL
+					&& traversed + links[link + SPAN] <= rank) {
+				traversed += links[link + SPAN];
+				entry = links[link + ENTRY];
+				x = links[link + TARGET];
+				link = x + l * LINK_SIZE;
+			}
+			if (traversed == rank)
+				return entry;
+		}
+		return NIL;
+	}
+
+	/**
+	 * Get the entry ranked after an entry.
+	 * 
+	 * @param entry
+	 *            An entry.
+	 * @return The next entry, or -1 if the entry has the worst score.
+	 */
+	public int nextEntry(int entry) {
+		int link = linkStart[entry];
+		return links[link + TARGET] == NIL ? NIL : links[link + ENTRY];
+	}
+
+	/**
+	 * Get the score of an entry.
+	 * 
+	 * @param entry
+	 *            An entry.
+	 * @return The score.
+	 */
+	public int getScore(int entry) {
+		return scores[entry];
+	}
+
+	/**
+	 * Get the player's name of an entry.
+	 * 
+	 * @param entry
+	 *            An entry.
+	 * @return The name.
+	 */
+	public String getName(int entry) {
+		return new String(names, nameStart[entry], nameLength[entry] & 0xff);
+	}
+
+	/**
+	 * Add every score in a stream of lines in the format of the hiscore file,
+	 * a name, a tab and a score, e.g. ScoreLog's archive. The stream is parsed
+	 * byte by byte, without creating a String or a Score per line. Empty lines
+	 * and lines starting with '#' are skipped.
+	 * 
+	 * @param in
+	 *            The stream, which is read to the end but not closed.
+	 * @return The number of scores added.
+	 * @throws IOException
+	 *             If a reading error is encountered.
+	 * @throws ScoreFormatException
+	 *             If a line is formatted incorrectly.
+	 */
+	public int load(InputStream in) throws IOException, ScoreFormatException {
+		byte[] buffer = new byte[65536];
+		int count = 0;
+		int lineNumber = 1;
+		// 0: name, 1: score, 2: comment
+		int field = 0;
+		int length = 0;
+		boolean ascii = true;
+		boolean negative = false;
+		boolean digits = false;
+		long points = 0;
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			for (int i = 0; i < read; i++) {
+				int b = buffer[i];
+				if (b == '\n' || b == '\r') {
+					if (field == 1) {
+						if (!digits)
+							throw error(lineNumber);
+						addParsed(length, ascii, (int) (negative ? -points
+								: points));
+						count++;
+					} else if (field == 0 && length > 0) {
+						throw error(lineNumber);
+					}
+					if (b == '\n')
+						lineNumber++;
+					field = 0;
+					length = 0;
+					ascii = true;
+					negative = false;
+					digits = false;
+					points = 0;
+				} else if (field == 0) {
+					if (b == '\t') {
+						field = 1;
+					} else if (b == '#' && length == 0) {
+						field = 2;
+					} else {
+						if (length == nameBytes.length)
+							throw error(lineNumber);
+						nameBytes[length++] = (byte) b;
+						if (b < 0)
+							ascii = false;
+					}
+				} else if (field == 1) {
+					if (b >= '0' && b <= '9') {
+						points = points * 10 + (b - '0');
+						digits = true;
+						if (points > Integer.MAX_VALUE)
+							throw error(lineNumber);
+					} else if (b == '-' && !digits && !negative) {
+						negative = true;
+					} else {
+						throw error(lineNumber);
+					}
+				}
+			}
+		}
+		if (field == 1) {
+			if (!digits)
+				throw error(lineNumber);
+			addParsed(length, ascii, (int) (negative ? -points : points));
+			count++;
+		} else if (field == 0 && length > 0) {
+			throw error(lineNumber);
+		}
+		return count;
+	}
+
+	/**
+	 * Add a score parsed by load, with its name in nameBytes.
+	 */
+	private void addParsed(int length, boolean ascii, int points) {
+		if (!ascii) {
+			add(new String(nameBytes, 0, length, UTF8), points);
+			return;
+		}
+		int entry = insert(points);
+		ensureNames(length);
+		for (int i = 0; i < length; i++)
+			names[namesSize + i] = (char) nameBytes[i];
+		nameStart[entry] = namesSize;
+		nameLength[entry] = (byte) length;
+		namesSize += length;
+	}
+
+	private static ScoreFormatException error(int lineNumber) {
+		return new ScoreFormatException(
+				"Incorrectly formatted information (expecting a string, a tab and an integer).\nIn line "
+						+ lineNumber);
+	}
+
+	/**
+	 * Link a new entry into the list after every score at least as good.
+	 * 
+	 * @return The new entry, without a name.
+	 */
+	private int insert(int points) {
+		int x = linkStart[HEAD];
+		int rank = 0;
+		for (int l = level - 1; l >= 0; l--) {
+			int link = x + l * LINK_SIZE;
+			while (links[link + TARGET] != NIL && links[link + SCORE] >= points) {
+				rank += links[link + SPAN];
+				x = links[link + TARGET];
+				link = x + l * LINK_SIZE;
+			}
+			update[l] = link;
+			updateRank[l] = rank;
+		}
+		int h = randomHeight();
+		if (h > level) {
+			for (int l = level; l < h; l++) {
+				update[l] = linkStart[HEAD] + l * LINK_SIZE;
+				updateRank[l] = 0;
+			}
+			level = h;
+		}
+		int entry = newEntry(points, h);
+		int start = linkStart[entry];
+		for (int l = 0; l < h; l++) {
+			int link = update[l];
+			int added = start + l * LINK_SIZE;
+			int before = rank - updateRank[l];
+			links[added + TARGET] = links[link + TARGET];
+			links[added + SPAN] = links[link + SPAN] - before;
+			links[added + SCORE] = links[link + SCORE];
+			links[added + ENTRY] = links[link + ENTRY];
+			links[link + TARGET] = start;
+			links[link + SPAN] = before + 1;
+			links[link + SCORE] = points;
+			links[link + ENTRY] = entry;
+		}
+		// the links passing over the new entry now skip one more place
+		for (int l = h; l < level; l++)
+			links[update[l] + SPAN]++;
+		return entry;
+	}
+
+	/**
+	 * Allocate an entry and its links.
+	 */
+	private int newEntry(int points, int h) {
+		if (entries == scores.length) {
+			int capacity = entries * 2;
+			scores = Arrays.copyOf(scores, capacity);
+			nameStart = Arrays.copyOf(nameStart, capacity);
+			nameLength = Arrays.copyOf(nameLength, capacity);
+			linkStart = Arrays.copyOf(linkStart, capacity);
+		}
+		int size = h * LINK_SIZE;
+		if (linksSize + size > links.length)
+			links = Arrays.copyOf(links, Math.max(links.length * 2, linksSize
+					+ size));
+		int entry = entries++;
+		scores[entry] = points;
+		linkStart[entry] = linksSize;
+		linksSize += size;
+		return entry;
+	}
+
+	/**
+	 * Make room for a name of the given length.
+	 */
+	private void ensureNames(int length) {
+		if (namesSize + length > names.length)
+			names = Arrays.copyOf(names, Math.max(names.length * 2, namesSize
+					+ length));
+	}
+
+	/**
+	 * Pick the number of levels a new entry is linked at.
+	 */
+	private int randomHeight() {
+		random ^= random << 13;
+		random ^= random >>> 7;
+		random ^= random << 17;
+		int h = 1;
+		long bits = random;
+		while ((bits & 3) == 0 && h < MAX_LEVEL) {
+			h++;
+			bits >>>= 2;
+		}
+		return h;
+	}
+}
@@ -0,0 +1,71 @@
+package alien.hiscore;
+
+/**
+ * The name of a new hiscore, as it is being typed in on the game over screen.
+ * Characters are typed in on the event dispatch thread, while the name is
+ * drawn on the animation thread, so every change replaces the name returned
+ * by getName() with a new string.
+ * 
+ * @see Hiscore
+ * @author Ole
+ */
+public final class NameEntry {
+	// The maximum length of a name.
+	public static final int MAX_LENGTH = 7;
+
+	private final int score;
+	private final StringBuilder name = new StringBuilder(MAX_LENGTH);
+	// the name typed in so far, replaced on every change
+	private volatile String text = "";
+
+	/**
+	 * Start entering a name for a hiscore.
+	 * 
+	 * @param score
+	 *            The score the name is entered for.
+	 */
+	public NameEntry(int score) {
+		this.score = score;
+	}
+
+	/**
+	 * Add a character to the end of the name. Characters which cannot be
+	 * stored in the hiscore file, and characters beyond MAX_LENGTH, are
+	 * ignored.
+	 * 
+	 * @param c
+	 *            The character typed.
+	 * @return true if the character was added.
+	 */
+	public synchronized boolean type(char c) {
+		if (name.length() >= MAX_LENGTH || c == '\t' || Character.isISOControl(c)
+				|| !Character.isDefined(c))
+			return false;
+		name.append(c);
+		text = name.toString();
+		return true;
+	}
+
+	/**
+	 * Remove the last character of the name, if any.
+	 */
+	public synchronized void backspace() {
+		if (name.length() == 0)
+			return;
+		name.setLength(name.length() - 1);
+		text = name.toString();
+	}
+
+	/**
+	 * Get the name typed in so far.
+	 * 
+	 * @return The name. The same string is returned until the name changes.
+	 */
+	public String getName() {
+		return text;
+	}
+
+	public int getScore() {
+		return score;
+	}
+}
@@ -0,0 +1,316 @@
+package alien.hiscore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A KLL sketch: an approximate summary of any number of values in a few KB,
+ * from which the rank of a value among all the values, or the value at a
+ * given rank, can be estimated to within about 1% of the number of values.
+ * Two sketches can be merged into one summarising the values of both, e.g.
+ * the sketches of different machines.
+ * 
+ * The values are kept in a stack of compactors. Each value kept at level h
+ * stands for 2^h of the values added. New values go to level 0, and when a
+ * level is full, it is sorted and every other value, starting at a random
+ * one of the first two, is moved up a level, the rest being dropped. The
+ * capacity of the levels falls off by a factor of 2/3 from the top down, so
+ * the top level holds K values and the whole sketch about 3K.
+ * 
+ * A sketch is not thread safe.
+ * 
+ * @see ScoreSketch
+ * @author Ole
+ */
+public final class QuantileSketch {
+	// the capacity of the top level, which trades size for accuracy
+	public static final int DEFAULT_K = 200;
+	private static final double C = 2.0 / 3.0;
+
+	private final int k;
+	// the values at each level, the first sizes[h] of levels[h] being used
+	private int[][] levels = new int[0][];
+	private int[] sizes = new int[0];
+	private int height;
+	// the number of values kept, and the number which triggers a compaction
+	private int size;
+	private int maxSize;
+	// the number of values added
+	private long count;
+	// the state of the xorshift generator which picks the values to keep
+	private long random = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Create an empty sketch with the default accuracy.
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Create an empty sketch.
+	 * 
+	 * @param k
+	 *            The capacity of the top level, at least 8.
+	 */
+	public QuantileSketch(int k) {
+		if (k < 8 || k > 65535)
+			throw new IllegalArgumentException("k out of range: " + k);
+		this.k = k;
+		grow();
+	}
+
+	/**
+	 * Get the number of values added, including those merged in.
+	 * 
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Add a value.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	public void add(int value) {
+		append(0, value);
+		count++;
+		while (size >= maxSize)
+			compress();
+	}
+
+	/**
+	 * Add the values of another sketch. The other sketch is left unchanged.
+	 * 
+	 * @param other
+	 *            A sketch.
+	 */
+	public void merge(QuantileSketch other) {
+		while (height < other.height)
+			grow();
+		for (int h = 0; h < other.height; h++)
+			for (int i = 0; i < other.sizes[h]; i++)
+				append(h, other.levels[h][i]);
+		count += other.count;
+		while (size >= maxSize)
+			compress();
+	}
+
+	/**
+	 * Estimate the number of values added which are less than a given value.
+	 * 
+	 * @param value
+	 *            A value.
+	 * @return The estimated number of smaller values.
+	 */
+	public long countBelow(int value) {
+		long below = 0;
+		for (int h = 0; h < height; h++) {
+			int[] items = levels[h];
+			for (int i = 0; i < sizes[h]; i++)
+				if (items[i] < value)
+					below += 1L << h;
+		}
+		return below;
+	}
+
+	/**
+	 * Estimate the fraction of the values added which are less than a given
+	 * value.
+	 * 
+	 * @param value
+	 *            A value.
+	 * @return The estimated fraction, from 0 to 1, or 0 if the sketch is
+	 *         empty.
+	 */
+	public double rank(int value) {
+		return count == 0 ? 0.0 : (double) countBelow(value) / count;
+	}
+
+	/**
+	 * Estimate the value with a given rank, e.g. 0.5 for the median.
+	 * 
+	 * @param rank
+	 *            The fraction of the values which are to be less than or
+	 *            equal to the value returned, from 0 to 1.
+	 * @return The estimated value, or 0 if the sketch is empty.
+	 */
+	public int quantile(double rank) {
+		if (size == 0)
+			return 0;
+		// sort the values kept, each with its level in the low byte
+		long[] weighted = new long[size];
+		int n = 0;
+		for (int h = 0; h < height; h++)
+			for (int i = 0; i < sizes[h]; i++)
+				weighted[n++] = (long) levels[h][i] << 8 | h;
+		Arrays.sort(weighted);
+		double target = rank * count;
+		long seen = 0;
+		for (int i = 0; i < n - 1; i++) {
+			seen += 1L << (weighted[i] & 0xff);
+			if (seen >= target)
+				return (int) (weighted[i] >> 8);
+		}
+		return (int) (weighted[n - 1] >> 8);
+	}
+
+	/**
+	 * Write the sketch. Each level is written sorted, as varints of the
+	 * differences between consecutive values, which for scores and levels
+	 * mostly take a byte or two.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             If a writing error is encountered.
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeShort(k);
+		writeVarint(out, count);
+		out.writeByte(height);
+		for (int h = 0; h < height; h++) {
+			int[] items = levels[h];
+			Arrays.sort(items, 0, sizes[h]);
+			writeVarint(out, sizes[h]);
+			long previous = Integer.MIN_VALUE;
+			for (int i = 0; i < sizes[h]; i++) {
+				writeVarint(out, items[i] - previous);
+				previous = items[i];
+			}
+		}
+	}
+
+	/**
+	 * Read a sketch written by write.
+	 * 
+	 * @param in
+	 *            The input.
+	 * @return The sketch.
+	 * @throws IOException
+	 *             If a reading error is encountered, or the sketch is
+	 *             malformed.
+	 */
+	public static QuantileSketch read(DataInput in) throws IOException {
+		QuantileSketch sketch;
+		try {
+			sketch = new QuantileSketch(in.readUnsignedShort());
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage());
+		}
+		long count = readVarint(in);
+		int height = in.readUnsignedByte();
+		if (height > 62)
+			throw new IOException("Sketch too high: " + height);
+		while (sketch.height < height)
+			sketch.grow();
+		long weight = 0;
+		for (int h = 0; h < height; h++) {
+			long size = readVarint(in);
+			if (size >= sketch.maxSize)
+				throw new IOException("Sketch level too long: " + size);
+			long value = Integer.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				value += readVarint(in);
+				if (value > Integer.MAX_VALUE)
+					throw new IOException("Sketch value out of range");
+				sketch.append(h, (int) value);
+			}
+			weight += size << h;
+		}
+		if (weight != count)
+			throw new IOException("Sketch count " + count
+					+ " does not match its values");
+		sketch.count = count;
+		while (sketch.size >= sketch.maxSize)
+			sketch.compress();
+		return sketch;
+	}
+
+	/**
+	 * Add a value to a level, without compressing.
+	 */
+	private void append(int h, int value) {
+		if (sizes[h] == levels[h].length)
+			levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+		levels[h][sizes[h]++] = value;
+		size++;
+	}
+
+	/**
+	 * Compact the lowest level which is full into the level above it.
+	 */
+	private void compress() {
+		for (int h = 0; h < height; h++) {
+			if (sizes[h] >= capacity(h)) {
+				if (h + 1 == height)
+					grow();
+				int[] items = levels[h];
+				int n = sizes[h];
+				Arrays.sort(items, 0, n);
+				// with an odd number of values, the smallest stays behind
+				int first = n & 1;
+				for (int i = first + nextBit(); i < n; i += 2)
+					append(h + 1, items[i]);
+				size -= n - first;
+				sizes[h] = first;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Add a level at the top, which lowers the capacity of the others.
+	 */
+	private void grow() {
+		height++;
+		levels = Arrays.copyOf(levels, height);
+		sizes = Arrays.copyOf(sizes, height);
+		levels[height - 1] = new int[Math.max(capacity(height - 1), 8)];
+		maxSize = 0;
+		for (int h = 0; h < height; h++)
+			maxSize += capacity(h);
+	}
+
+	/**
+	 * Get the number of values at which a level is compacted.
+	 */
+	private int capacity(int h) {
+		return (int) Math.ceil(Math.pow(C, height - h - 1) * k) + 1;
+	}
+
+	/**
+	 * Get a random bit.
+	 */
+	private int nextBit() {
+		random ^= random << 13;
+		random ^= random >>> 7;
+		random ^= random << 17;
+		return (int) (random >>> 63);
+	}
+
+	private static void writeVarint(DataOutput out, long value)
+			throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarint(DataInput in) throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+}
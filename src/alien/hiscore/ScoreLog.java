@@ -0,0 +1,508 @@
+package alien.hiscore;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The hiscores on disk, shared safely by all the game instances on a machine.
+ * New scores are appended to a binary log, and every so often the log is
+ * compacted into a snapshot: the hiscore file itself, which only holds the
+ * best scores. Every access locks the log with a FileChannel lock, so scores
+ * added by different processes are never lost, and as the log never grows
+ * past COMPACT_THRESHOLD records, reading the hiscores takes constant time
+ * however many games have been played.
+ * 
+ * The log starts with a magic number and a generation number. Each record
+ * holds the length of the name in bytes, the name in UTF-8, the score and a
+ * CRC32 checksum of the rest of the record. A record which was only partly
+ * written, e.g. because the game crashed, fails its checksum; it and anything
+ * after it is ignored, and cut off the next time a score is added.
+ * 
+ * The snapshot starts with a line "#generation N", saying that it includes
+ * every record of the logs up to generation N. It is replaced atomically,
+ * and the log is then restarted with the next generation, so a crash between
+ * the two never counts a score twice.
+ * 
+ * As the snapshot only keeps the best scores, every record is also appended
+ * to an archive, e.g. hiscores.archive, in the format of the snapshot, before
+ * the log is compacted. The snapshot's "#archive L" line says how much of the
+ * archive it covers; anything after that was written by a compaction which
+ * never finished, and is cut off.
+ * 
+ * The ScoreSketch of every game, e.g. hiscores.sketch, is kept under the
+ * same lock, so that games sketched by different processes are merged.
+ * 
+ * @see Hiscore
+ * @author Ole
+ */
+final class ScoreLog {
+	// "HSLG"
+	private static final int MAGIC = 0x48534c47;
+	private static final int HEADER_LENGTH = 12;
+	// number of records in the log which triggers a compaction
+	static final int COMPACT_THRESHOLD = 32;
+	// the longest a record can be
+	private static final int MAX_RECORD_LENGTH = 1 + 255 + 4 + 4;
+	private static final String GENERATION_PREFIX = "#generation ";
+	private static final String ARCHIVE_PREFIX = "#archive ";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File snapshotFile;
+	private final File logFile;
+	private final File archiveFile;
+	private final File sketchFile;
+	// the length of the archive covered by the snapshot, or -1 if the
+	// snapshot does not say, as read by the latest readSnapshot
+	private long archived;
+
+	/**
+	 * Use the given snapshot file, and the log, the archive and the sketch
+	 * next to it, e.g. hiscores.log, hiscores.archive and hiscores.sketch for
+	 * hiscores.txt.
+	 * 
+	 * @param filename
+	 *            The filename of the snapshot.
+	 */
+	ScoreLog(String filename) {
+		snapshotFile = new File(filename);
+		String base = filename.endsWith(".txt") ? filename.substring(0,
+				filename.length() - 4) : filename;
+		logFile = new File(base + ".log");
+		archiveFile = new File(base + ".archive");
+		sketchFile = new File(base + ".sketch");
+	}
+
+	/**
+	 * Read every score in the snapshot and the log.
+	 * 
+	 * @param scores
+	 *            The list the scores are added to.
+	 * @throws IOException
+	 *             If a reading error is encountered.
+	 * @throws ScoreFormatException
+	 *             If the snapshot is formatted incorrectly.
+	 */
+	synchronized void read(List<Score> scores) throws IOException,
+			ScoreFormatException {
+		FileChannel channel = open();
+		try {
+			FileLock lock = channel.lock();
+			try {
+				readLocked(channel, scores);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Append scores to the log, compacting it if it has grown too long.
+	 * 
+	 * @param added
+	 *            The scores to append.
+	 * @param scores
+	 *            The list every score in the snapshot and the log is added to,
+	 *            including those added by other processes.
+	 * @param length
+	 *            The number of scores kept in the snapshot.
+	 * @throws IOException
+	 *             If a reading or writing error is encountered.
+	 * @throws ScoreFormatException
+	 *             If the snapshot is formatted incorrectly.
+	 */
+	synchronized void append(List<Score> added, List<Score> scores, int length)
+			throws IOException, ScoreFormatException {
+		FileChannel channel = open();
+		try {
+			FileLock lock = channel.lock();
+			try {
+				int count = readLocked(channel, scores);
+				long end = channel.position();
+				// cut off anything after the last good record
+				channel.truncate(end);
+				ByteBuffer buffer = ByteBuffer.allocate(added.size()
+						* MAX_RECORD_LENGTH);
+				for (Score score : added)
+					putRecord(buffer, score);
+				buffer.flip();
+				while (buffer.hasRemaining())
+					channel.write(buffer, end + buffer.position());
+				channel.force(false);
+				scores.addAll(added);
+				if (count + added.size() >= COMPACT_THRESHOLD)
+					compact(channel, scores, count + added.size(), length);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Add every score ever added to a leaderboard: the archive, streamed
+	 * straight into the leaderboard, and the log.
+	 * 
+	 * @param board
+	 *            The leaderboard.
+	 * @throws IOException
+	 *             If a reading error is encountered.
+	 * @throws ScoreFormatException
+	 *             If the snapshot or the archive is formatted incorrectly.
+	 */
+	synchronized void readAll(Leaderboard board) throws IOException,
+			ScoreFormatException {
+		FileChannel channel = open();
+		try {
+			FileLock lock = channel.lock();
+			try {
+				List<Score> scores = new ArrayList<Score>();
+				int count = readLocked(channel, scores);
+				int first = 0;
+				if (archived >= 0) {
+					FileChannel archive = openArchive();
+					try {
+						archive.truncate(archived);
+						board.load(Channels.newInputStream(archive));
+					} finally {
+						archive.close();
+					}
+					// the snapshot is in the archive already
+					first = scores.size() - count;
+				}
+				for (Score score : scores.subList(first, scores.size()))
+					board.add(score.getName(), score.getScore());
+			} finally {
+				lock.release();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read the sketch of every game.
+	 * 
+	 * @return The sketch, empty if there is none yet.
+	 * @throws IOException
+	 *             If a reading error is encountered.
+	 */
+	synchronized ScoreSketch readSketch() throws IOException {
+		FileChannel channel = open();
+		try {
+			FileLock lock = channel.lock();
+			try {
+				return ScoreSketch.load(sketchFile);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Merge games into the sketch of every game.
+	 * 
+	 * @param added
+	 *            The sketch of the games to add.
+	 * @return The sketch of every game, including those added by other
+	 *         processes.
+	 * @throws IOException
+	 *             If a reading or writing error is encountered.
+	 */
+	synchronized ScoreSketch mergeSketch(ScoreSketch added)
+			throws IOException {
+		FileChannel channel = open();
+		try {
+			FileLock lock = channel.lock();
+			try {
+				ScoreSketch all = ScoreSketch.load(sketchFile);
+				all.merge(added);
+				all.save(sketchFile);
+				return all;
+			} finally {
+				lock.release();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Open the log, creating it if it does not exist.
+	 */
+	private FileChannel open() throws IOException {
+		return FileChannel.open(logFile.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+	}
+
+	/**
+	 * Open the archive, creating it if it does not exist.
+	 */
+	private FileChannel openArchive() throws IOException {
+		return FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+	}
+
+	/**
+	 * Read the snapshot and the valid records of the log, which must be
+	 * locked. The log is left positioned after the last valid record, and
+	 * restarted if it is empty or already in the snapshot.
+	 * 
+	 * @return The number of valid records in the log.
+	 */
+	private int readLocked(FileChannel channel, List<Score> scores)
+			throws IOException, ScoreFormatException {
+		long covered = readSnapshot(scores);
+
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Hiscore log too long: " + logFile);
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0)
+			;
+		buffer.flip();
+		if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+			restart(channel, covered + 1);
+			return 0;
+		}
+		long generation = buffer.getLong();
+		if (generation <= covered) {
+			// compacted into the snapshot, but not restarted yet
+			restart(channel, covered + 1);
+			return 0;
+		}
+		int count = 0;
+		int end = buffer.position();
+		Score score;
+		while ((score = getRecord(buffer)) != null) {
+			scores.add(score);
+			count++;
+			end = buffer.position();
+		}
+		channel.position(end);
+		return count;
+	}
+
+	/**
+	 * Read the scores in the snapshot, and the length of the archive it
+	 * covers.
+	 * 
+	 * @return The generation of the last log in the snapshot, or -1 if none.
+	 */
+	private long readSnapshot(List<Score> scores) throws IOException,
+			ScoreFormatException {
+		archived = -1L;
+		if (!snapshotFile.exists())
+			return -1L;
+		long covered = -1L;
+		BufferedReader in = new BufferedReader(new FileReader(snapshotFile));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(GENERATION_PREFIX)) {
+					try {
+						covered = Long.parseLong(line
+								.substring(GENERATION_PREFIX.length()));
+					} catch (NumberFormatException e) {
+						throw new ScoreFormatException("Error in line:\n"
+								+ line);
+					}
+				} else if (line.startsWith(ARCHIVE_PREFIX)) {
+					try {
+						archived = Long.parseLong(line.substring(ARCHIVE_PREFIX
+								.length()));
+					} catch (NumberFormatException e) {
+						throw new ScoreFormatException("Error in line:\n"
+								+ line);
+					}
+				} else if (line.length() > 0) {
+					scores.add(Score.fromLine(line));
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return covered;
+	}
+
+	/**
+	 * Archive the records of the log, which must be locked, replace the
+	 * snapshot with the best of the given scores, and restart the log.
+	 * 
+	 * @param scores
+	 *            The scores in the snapshot followed by the records of the
+	 *            log.
+	 * @param records
+	 *            The number of records of the log.
+	 */
+	private void compact(FileChannel channel, List<Score> scores, int records,
+			int length) throws IOException {
+		channel.position(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		channel.read(header, 0);
+		header.flip();
+		header.getInt();
+		long generation = header.getLong();
+
+		// a snapshot which predates the archive is archived along with the log
+		long archiveLength = archive(archived < 0 ? scores : scores.subList(
+				scores.size() - records, scores.size()));
+
+		Score[] best = new Score[length];
+		for (Score score : scores)
+			Hiscore.insert(best, score);
+		String newline = System.lineSeparator();
+		StringBuilder sb = new StringBuilder();
+		sb.append(GENERATION_PREFIX).append(generation).append(newline);
+		sb.append(ARCHIVE_PREFIX).append(archiveLength).append(newline);
+		for (int i = 0; i < best.length && best[i] != null; i++)
+			sb.append(best[i]).append(newline);
+		// in the charset the snapshot is read with
+		ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(
+				Charset.defaultCharset()));
+		File temp = new File(snapshotFile.getPath() + ".tmp");
+		FileChannel out = FileChannel.open(temp.toPath(),
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (buffer.hasRemaining())
+				out.write(buffer);
+			// the snapshot must be on disk before the rename can be, or a
+			// crash could leave an empty hiscore file after the log is
+			// restarted
+			out.force(true);
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), snapshotFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory();
+		restart(channel, generation + 1);
+	}
+
+	/**
+	 * Force the rename of the snapshot to disk, before the log it replaces is
+	 * restarted. Not every platform can open a directory, so this is only
+	 * done where it can be.
+	 */
+	private void syncDirectory() {
+		File dir = snapshotFile.getAbsoluteFile().getParentFile();
+		if (dir == null)
+			return;
+		try {
+			FileChannel channel = FileChannel.open(dir.toPath(),
+					StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// e.g. on Windows, which cannot open a directory as a file
+		}
+	}
+
+	/**
+	 * Append scores to the archive, after cutting off anything not covered by
+	 * the snapshot.
+	 * 
+	 * @return The length of the archive.
+	 */
+	private long archive(List<Score> scores) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (Score score : scores)
+			sb.append(score).append('\n');
+		ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(UTF8));
+		FileChannel archive = openArchive();
+		try {
+			long end = archived < 0 ? 0 : archived;
+			archive.truncate(end);
+			while (buffer.hasRemaining())
+				archive.write(buffer, end + buffer.position());
+			archive.force(false);
+			return end + buffer.limit();
+		} finally {
+			archive.close();
+		}
+	}
+
+	/**
+	 * Empty the log, which must be locked, and start the given generation.
+	 */
+	private void restart(FileChannel channel, long generation)
+			throws IOException {
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(MAGIC);
+		header.putLong(generation);
+		header.flip();
+		while (header.hasRemaining())
+			channel.write(header, header.position());
+		channel.force(false);
+		channel.position(HEADER_LENGTH);
+	}
+
+	/**
+	 * Write a record.
+	 */
+	private static void putRecord(ByteBuffer buffer, Score score) {
+		byte[] name = score.getName().getBytes(UTF8);
+		int length = Math.min(name.length, 255);
+		int start = buffer.position();
+		buffer.put((byte) length);
+		buffer.put(name, 0, length);
+		buffer.putInt(score.getScore());
+		buffer.putInt(checksum(buffer, start, 1 + length + 4));
+	}
+
+	/**
+	 * Read a record.
+	 * 
+	 * @return The score, or null if there are no more valid records.
+	 */
+	private static Score getRecord(ByteBuffer buffer) {
+		int start = buffer.position();
+		if (buffer.remaining() < 1)
+			return null;
+		int length = buffer.get(start) & 0xff;
+		if (buffer.remaining() < 1 + length + 4 + 4)
+			return null;
+		int stored = buffer.getInt(start + 1 + length + 4);
+		if (stored != checksum(buffer, start, 1 + length + 4))
+			return null;
+		byte[] name = new byte[length];
+		buffer.position(start + 1);
+		buffer.get(name);
+		int points = buffer.getInt();
+		buffer.getInt();
+		return new Score(new String(name, UTF8), points);
+	}
+
+	/**
+	 * Calculate the CRC32 of part of a buffer.
+	 */
+	private static int checksum(ByteBuffer buffer, int start, int length) {
+		CRC32 crc = new CRC32();
+		for (int i = start; i < start + length; i++)
+			crc.update(buffer.get(i));
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,201 @@
+package alien.hiscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Sketches of the final score and the level reached of every game played,
+ * so that a player can be told what fraction of all games their score beat,
+ * in a few KB however many games have been played. The sketch files of
+ * different machines can be merged with:
+ * 
+ * <pre>
+ * java alien.hiscore.ScoreSketch merged.sketch a/hiscores.sketch b/hiscores.sketch
+ * </pre>
+ * 
+ * The file format is a magic number, a version byte, and the score and
+ * level sketches, see QuantileSketch.write().
+ * 
+ * @see QuantileSketch
+ * @see Hiscore
+ * @author Ole
+ */
+public final class ScoreSketch {
+	// "SKCH"
+	private static final int MAGIC = 0x534b4348;
+	private static final int VERSION = 1;
+
+	private QuantileSketch scores;
+	private QuantileSketch levels;
+
+	/**
+	 * Create empty sketches.
+	 */
+	public ScoreSketch() {
+		this(new QuantileSketch(), new QuantileSketch());
+	}
+
+	private ScoreSketch(QuantileSketch scores, QuantileSketch levels) {
+		this.scores = scores;
+		this.levels = levels;
+	}
+
+	/**
+	 * Add a game.
+	 * 
+	 * @param score
+	 *            The final score.
+	 * @param level
+	 *            The level reached.
+	 */
+	public void add(int score, int level) {
+		scores.add(score);
+		levels.add(level);
+	}
+
+	/**
+	 * Add the games of another sketch.
+	 * 
+	 * @param other
+	 *            A sketch, which is left unchanged.
+	 */
+	public void merge(ScoreSketch other) {
+		scores.merge(other.scores);
+		levels.merge(other.levels);
+	}
+
+	public boolean isEmpty() {
+		return scores.getCount() == 0;
+	}
+
+	public QuantileSketch getScores() {
+		return scores;
+	}
+
+	public QuantileSketch getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Write the sketches.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             If a writing error is encountered.
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		scores.write(out);
+		levels.write(out);
+	}
+
+	/**
+	 * Read sketches written by write.
+	 * 
+	 * @param in
+	 *            The input.
+	 * @return The sketches.
+	 * @throws IOException
+	 *             If a reading error is encountered, or the input is not a
+	 *             sketch file of a known version.
+	 */
+	public static ScoreSketch read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a sketch file");
+		int version = in.readUnsignedByte();
+		if (version != VERSION)
+			throw new IOException("Unknown sketch version " + version);
+		QuantileSketch scores = QuantileSketch.read(in);
+		QuantileSketch levels = QuantileSketch.read(in);
+		return new ScoreSketch(scores, levels);
+	}
+
+	/**
+	 * Load sketches from a file.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @return The sketches, empty if the file does not exist.
+	 * @throws IOException
+	 *             If a reading error is encountered.
+	 */
+	public static ScoreSketch load(File file) throws IOException {
+		if (!file.exists())
+			return new ScoreSketch();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Save the sketches to a file, replacing it atomically.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @throws IOException
+	 *             If a writing error is encountered.
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(temp);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				stream));
+		try {
+			write(out);
+			out.flush();
+			// the data must be on disk before the rename can be
+			stream.getChannel().force(true);
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Merge sketch files, e.g. from different machines, and print a summary.
+	 * 
+	 * @param args
+	 *            The file to write, which is merged in too if it exists,
+	 *            followed by the files to merge.
+	 * @throws IOException
+	 *             If a file cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: ScoreSketch <output> <input>...");
+			System.exit(1);
+		}
+		File output = new File(args[0]);
+		ScoreSketch merged = load(output);
+		for (int i = 1; i < args.length; i++)
+			merged.merge(load(new File(args[i])));
+		merged.save(output);
+		System.out.println(merged.scores.getCount() + " games");
+		print("score", merged.scores);
+		print("level", merged.levels);
+	}
+
+	private static void print(String name, QuantileSketch sketch) {
+		System.out.println(name + ": median " + sketch.quantile(0.5)
+				+ ", 90% " + sketch.quantile(0.9) + ", 99% "
+				+ sketch.quantile(0.99) + ", max " + sketch.quantile(1.0));
+	}
+}
@@ -0,0 +1,342 @@
+package alien.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A recorded game: the seed of the simulation and the input bits applied
+ * before each tick, plus keyframes holding the whole state of the simulation
+ * every keyframeInterval ticks. As the simulation is deterministic, replaying
+ * the inputs from a keyframe reproduces the game exactly, so seeking to any
+ * tick takes at most keyframeInterval ticks.
+ * 
+ * The inputs are stored as runs of ticks with the same input, which keeps
+ * the file small, as the input only changes when a key is pressed or
+ * released. The file format is:
+ * 
+ * <pre>
+ * int     magic number
+ * byte    version
+ * long    seed
+ * long    tick length in ns
+ * long    clock ticks before the recording started
+ * varint  keyframe interval
+ * varint  number of ticks
+ * varint  number of runs
+ *         per run: byte input, varint number of ticks
+ * varint  number of keyframes
+ *         per keyframe: varint length, bytes written by writeState
+ * </pre>
+ * 
+ * A varint is an unsigned number written seven bits at a time, lowest bits
+ * first, with the top bit of each byte set if more bytes follow. Replay files
+ * are compressed with GZIP, which mostly shrinks the keyframes.
+ * 
+ * @see ReplayRecorder
+ * @see ReplayPlayer
+ * @author Ole
+ */
+public final class Replay {
+	// "RPLY"
+	private static final int MAGIC = 0x52504c59;
+	private static final int VERSION = 1;
+
+	private final long seed;
+	private final long tickLength;
+	private final long startTick;
+	private final int keyframeInterval;
+	private final long tickCount;
+	// the input and length of each run, and the tick at which it starts
+	private final byte[] runInputs;
+	private final int[] runLengths;
+	private final long[] runStarts;
+	private final int runCount;
+	// the state of the simulation at every keyframeInterval ticks
+	private final byte[][] keyframes;
+
+	/**
+	 * Create a replay from recorded runs and keyframes.
+	 */
+	Replay(long seed, long tickLength, long startTick, int keyframeInterval,
+			byte[] runInputs, int[] runLengths, int runCount,
+			List<byte[]> keyframes) {
+		this.seed = seed;
+		this.tickLength = tickLength;
+		this.startTick = startTick;
+		this.keyframeInterval = keyframeInterval;
+		this.runInputs = runInputs;
+		this.runLengths = runLengths;
+		this.runCount = runCount;
+		this.keyframes = keyframes.toArray(new byte[keyframes.size()][]);
+		runStarts = new long[runCount];
+		long ticks = 0L;
+		for (int run = 0; run < runCount; run++) {
+			runStarts[run] = ticks;
+			ticks += runLengths[run];
+		}
+		tickCount = ticks;
+	}
+
+	/**
+	 * Read a replay from a file.
+	 * 
+	 * @param file
+	 *            A file written by save.
+	 * @return The replay.
+	 * @throws IOException
+	 *             If the file could not be read, or is not a replay.
+	 */
+	public static Replay load(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new GZIPInputStream(
+				new FileInputStream(file)));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read a replay.
+	 * 
+	 * @param stream
+	 *            The stream to read from, positioned at the start of a replay
+	 *            written by write.
+	 * @return The replay.
+	 * @throws IOException
+	 *             If the stream could not be read, or does not hold a replay.
+	 */
+	public static Replay read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a replay");
+		int version = in.readUnsignedByte();
+		if (version != VERSION)
+			throw new IOException("Unsupported replay version: " + version);
+		long seed = in.readLong();
+		long tickLength = in.readLong();
+		long startTick = in.readLong();
+		int keyframeInterval = readCount(in);
+		long tickCount = readVarint(in);
+		int runCount = readCount(in);
+		byte[] runInputs = new byte[runCount];
+		int[] runLengths = new int[runCount];
+		for (int run = 0; run < runCount; run++) {
+			runInputs[run] = in.readByte();
+			runLengths[run] = readCount(in);
+		}
+		int keyframeCount = readCount(in);
+		byte[][] keyframes = new byte[keyframeCount][];
+		for (int i = 0; i < keyframeCount; i++) {
+			keyframes[i] = new byte[readCount(in)];
+			in.readFully(keyframes[i]);
+		}
+		if (tickLength <= 0 || keyframeInterval == 0 || keyframeCount == 0)
+			throw new IOException("Invalid replay header");
+		Replay replay = new Replay(seed, tickLength, startTick,
+				keyframeInterval, runInputs, runLengths, runCount,
+				Arrays.asList(keyframes));
+		if (replay.tickCount != tickCount)
+			throw new IOException("Replay holds " + replay.tickCount
+					+ " ticks, expected " + tickCount);
+		return replay;
+	}
+
+	/**
+	 * Write this replay to a file, replacing it if it exists.
+	 * 
+	 * @param file
+	 *            The file to write to.
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	public void save(File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new GZIPOutputStream(
+				new FileOutputStream(file)));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write this replay to a stream.
+	 * 
+	 * @param stream
+	 *            The stream to write to.
+	 * @throws IOException
+	 *             If the stream could not be written to.
+	 */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(seed);
+		out.writeLong(tickLength);
+		out.writeLong(startTick);
+		writeVarint(out, keyframeInterval);
+		writeVarint(out, tickCount);
+		writeVarint(out, runCount);
+		for (int run = 0; run < runCount; run++) {
+			out.writeByte(runInputs[run]);
+			writeVarint(out, runLengths[run]);
+		}
+		writeVarint(out, keyframes.length);
+		for (byte[] keyframe : keyframes) {
+			writeVarint(out, keyframe.length);
+			out.write(keyframe);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write an unsigned number as a varint.
+	 */
+	private static void writeVarint(DataOutputStream out, long value)
+			throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Read an unsigned number written as a varint.
+	 */
+	private static long readVarint(DataInputStream in) throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0)
+				throw new EOFException();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Read a varint which must fit in an int, e.g. a length.
+	 */
+	private static int readCount(DataInputStream in) throws IOException {
+		long value = readVarint(in);
+		if (value > Integer.MAX_VALUE)
+			throw new IOException("Count out of range: " + value);
+		return (int) value;
+	}
+
+	/**
+	 * Find the run holding the input of a tick.
+	 * 
+	 * @param tick
+	 *            A tick in the range 0 to getTickCount() - 1.
+	 * @return The index of the run.
+	 */
+	int findRun(long tick) {
+		int low = 0;
+		int high = runCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (runStarts[mid] <= tick)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	int getRunInput(int run) {
+		return runInputs[run] & 0xff;
+	}
+
+	int getRunLength(int run) {
+		return runLengths[run];
+	}
+
+	long getRunStart(int run) {
+		return runStarts[run];
+	}
+
+	/**
+	 * Get the input applied before a tick.
+	 * 
+	 * @param tick
+	 *            A tick in the range 0 to getTickCount() - 1.
+	 * @return The GameSimulation.INPUT_ bits of the tick.
+	 */
+	public int getInput(long tick) {
+		if (tick < 0 || tick >= tickCount)
+			throw new IndexOutOfBoundsException("Tick " + tick + " of "
+					+ tickCount);
+		return getRunInput(findRun(tick));
+	}
+
+	/**
+	 * Get the state of the simulation at a keyframe, as written by
+	 * GameSimulation.writeState.
+	 * 
+	 * @param index
+	 *            The index of the keyframe; keyframe i is taken before tick i
+	 *            * getKeyframeInterval().
+	 * @return The state.
+	 */
+	public byte[] getKeyframe(int index) {
+		return keyframes[index];
+	}
+
+	public int getKeyframeCount() {
+		return keyframes.length;
+	}
+
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Get the length of a tick.
+	 * 
+	 * @return The tick length in nanoseconds.
+	 */
+	public long getTickLength() {
+		return tickLength;
+	}
+
+	/**
+	 * Get the number of times the game clock had been ticked when the
+	 * recording started.
+	 * 
+	 * @return The number of ticks.
+	 */
+	public long getStartTick() {
+		return startTick;
+	}
+
+	/**
+	 * Get the number of ticks recorded.
+	 * 
+	 * @return The number of ticks.
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+}
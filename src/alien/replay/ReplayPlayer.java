@@ -0,0 +1,168 @@
+package alien.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import alien.GameClock;
+import alien.GameListener;
+import alien.GameSimulation;
+import alien.GameSimulation.State;
+
+/**
+ * Plays a replay back on a simulation of its own. The simulation can be
+ * stepped one tick at a time, e.g. by the animation loop of GamePanel, or run
+ * to the end as fast as possible. Seeking restores the nearest keyframe before
+ * the target and replays the inputs from there, with the sounds muted.
+ * 
+ * @see Replay
+ * @author Ole
+ */
+public final class ReplayPlayer {
+	private final Replay replay;
+	private final GameSimulation sim;
+	// the clock driving the simulation, recreated on every seek
+	private GameClock clock;
+	// the number of ticks played
+	private long tick;
+	// the run holding the input of the next tick, and the ticks left in it
+	private int run;
+	private int runLeft;
+	// set while seeking, to mute the sounds of the skipped ticks
+	private boolean seeking;
+
+	/**
+	 * Create a player positioned at the start of a replay.
+	 * 
+	 * @param replay
+	 *            The replay to play.
+	 * @param listener
+	 *            The listener notified by the simulation.
+	 * @throws IOException
+	 *             If the first keyframe of the replay is corrupt.
+	 */
+	public ReplayPlayer(Replay replay, final GameListener listener)
+			throws IOException {
+		this.replay = replay;
+		sim = new GameSimulation(new GameListener() {
+			public void stateChanged(State state) {
+				listener.stateChanged(state);
+			}
+
+			public void playSound(int sound) {
+				if (!seeking)
+					listener.playSound(sound);
+			}
+
+			public void levelChanged(int level) {
+				listener.levelChanged(level);
+			}
+
+			public void scoreChanged(int score) {
+				listener.scoreChanged(score);
+			}
+
+			public void livesChanged(int lives) {
+				listener.livesChanged(lives);
+			}
+
+			public void alienCountChanged(int alienCount) {
+				listener.alienCountChanged(alienCount);
+			}
+		}, replay.getSeed());
+		seek(0L);
+	}
+
+	/**
+	 * Play the next tick.
+	 * 
+	 * @return true if a tick was played, false if the replay has ended.
+	 */
+	public boolean step() {
+		if (tick >= replay.getTickCount())
+			return false;
+		if (runLeft == 0) {
+			run++;
+			runLeft = replay.getRunLength(run);
+		}
+		runLeft--;
+		sim.input(replay.getRunInput(run));
+		clock.tick(sim);
+		tick++;
+		return true;
+	}
+
+	/**
+	 * Play the rest of the replay as fast as possible.
+	 * 
+	 * @return The number of ticks played.
+	 */
+	public long runToEnd() {
+		long start = tick;
+		while (step())
+			;
+		return tick - start;
+	}
+
+	/**
+	 * Move to the given tick. The state of the nearest keyframe at or before
+	 * the tick is restored, and the ticks after it are played without sound.
+	 * 
+	 * @param target
+	 *            The tick to move to. It is clamped to the length of the
+	 *            replay.
+	 * @throws IOException
+	 *             If the keyframe is corrupt.
+	 */
+	public void seek(long target) throws IOException {
+		target = Math.max(0L, Math.min(target, replay.getTickCount()));
+		int keyframe = (int) Math.min(target / replay.getKeyframeInterval(),
+				replay.getKeyframeCount() - 1);
+		seeking = true;
+		try {
+			sim.readState(new DataInputStream(new ByteArrayInputStream(
+					replay.getKeyframe(keyframe))));
+			tick = (long) keyframe * replay.getKeyframeInterval();
+			clock = new GameClock(replay.getTickLength(), replay.getStartTick()
+					+ tick);
+			if (tick < replay.getTickCount()) {
+				run = replay.findRun(tick);
+				runLeft = (int) (replay.getRunStart(run)
+						+ replay.getRunLength(run) - tick);
+			} else {
+				run = -1;
+				runLeft = 0;
+			}
+			while (tick < target)
+				step();
+		} finally {
+			seeking = false;
+		}
+	}
+
+	/**
+	 * Get the simulation the replay is played on.
+	 * 
+	 * @return The simulation.
+	 */
+	public GameSimulation getSimulation() {
+		return sim;
+	}
+
+	/**
+	 * Get the number of ticks played.
+	 * 
+	 * @return The current tick.
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	public Replay getReplay() {
+		return replay;
+	}
+
+	public boolean isFinished() {
+		return tick >= replay.getTickCount();
+	}
+}
@@ -0,0 +1,139 @@
+package alien.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import alien.GameClock;
+import alien.GameSimulation;
+
+/**
+ * Records the inputs of a GameSimulation tick by tick, so that the game can be
+ * replayed later. The recording starts at the current state of the
+ * simulation, and record must be called with the input of every tick, just
+ * before it is applied to the simulation:
+ * 
+ * <pre>
+ * recorder.record(input);
+ * sim.input(input);
+ * clock.tick(sim);
+ * </pre>
+ * 
+ * Consecutive ticks with the same input are stored as a single run, and the
+ * whole state of the simulation is stored as a keyframe every keyframeInterval
+ * ticks.
+ * 
+ * @see Replay
+ * @author Ole
+ */
+public final class ReplayRecorder {
+	// keyframe every 10 seconds at 60 ticks/sec
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 600;
+
+	private final GameSimulation sim;
+	private final long seed;
+	private final long tickLength;
+	private final long startTick;
+	private final int keyframeInterval;
+	// number of ticks recorded
+	private long ticks = 0L;
+
+	// the input and length of each run, the last one being the current run
+	private byte[] runInputs = new byte[64];
+	private int[] runLengths = new int[64];
+	private int runCount = 0;
+
+	private List<byte[]> keyframes = new ArrayList<byte[]>();
+	// reused to write each keyframe
+	private ByteArrayOutputStream keyframeBuffer = new ByteArrayOutputStream();
+
+	/**
+	 * Start recording a simulation from its current state.
+	 * 
+	 * @param sim
+	 *            The simulation to record.
+	 * @param clock
+	 *            The clock driving the simulation.
+	 * @param keyframeInterval
+	 *            The number of ticks between keyframes.
+	 */
+	public ReplayRecorder(GameSimulation sim, GameClock clock,
+			int keyframeInterval) {
+		if (keyframeInterval <= 0)
+			throw new IllegalArgumentException(
+					"Keyframe interval must be positive: " + keyframeInterval);
+		this.sim = sim;
+		this.keyframeInterval = keyframeInterval;
+		seed = sim.getSeed();
+		tickLength = clock.getTickLength();
+		startTick = clock.getTicks();
+		addKeyframe();
+	}
+
+	/**
+	 * Record the input of the next tick. Called before the input is applied.
+	 * 
+	 * @param input
+	 *            The GameSimulation.INPUT_ bits of the tick.
+	 */
+	public void record(int input) {
+		if (ticks > 0 && ticks % keyframeInterval == 0)
+			addKeyframe();
+		ticks++;
+		if (runCount > 0 && runInputs[runCount - 1] == (byte) input
+				&& runLengths[runCount - 1] < Integer.MAX_VALUE) {
+			runLengths[runCount - 1]++;
+			return;
+		}
+		if (runCount == runInputs.length) {
+			byte[] inputs = new byte[runCount * 2];
+			System.arraycopy(runInputs, 0, inputs, 0, runCount);
+			runInputs = inputs;
+			int[] lengths = new int[runCount * 2];
+			System.arraycopy(runLengths, 0, lengths, 0, runCount);
+			runLengths = lengths;
+		}
+		runInputs[runCount] = (byte) input;
+		runLengths[runCount] = 1;
+		runCount++;
+	}
+
+	/**
+	 * Store the current state of the simulation as a keyframe.
+	 */
+	private void addKeyframe() {
+		keyframeBuffer.reset();
+		try {
+			sim.writeState(new DataOutputStream(keyframeBuffer));
+		} catch (IOException e) {
+			// a ByteArrayOutputStream is never full
+			throw new IllegalStateException(e);
+		}
+		keyframes.add(keyframeBuffer.toByteArray());
+	}
+
+	/**
+	 * Get the number of ticks recorded so far.
+	 * 
+	 * @return The number of ticks.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Get what has been recorded so far as a replay.
+	 * 
+	 * @return The replay.
+	 */
+	public Replay getReplay() {
+		byte[] inputs = new byte[runCount];
+		System.arraycopy(runInputs, 0, inputs, 0, runCount);
+		int[] lengths = new int[runCount];
+		System.arraycopy(runLengths, 0, lengths, 0, runCount);
+		return new Replay(seed, tickLength, startTick, keyframeInterval,
+				inputs, lengths, runCount, new ArrayList<byte[]>(keyframes));
+	}
+}
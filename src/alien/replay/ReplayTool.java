@@ -0,0 +1,47 @@
+package alien.replay;
+
+import java.io.File;
+import java.io.IOException;
+
+import alien.GameAdapter;
+import alien.GameSimulation;
+
+/**
+ * Plays replays headless, as fast as possible, and prints how each game
+ * ended. Used to go through many recorded sessions quickly:
+ * 
+ * <pre>
+ * java -cp space-invaders.jar alien.replay.ReplayTool replays/*.replay
+ * </pre>
+ * 
+ * @author Ole
+ */
+public final class ReplayTool {
+	private ReplayTool() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: ReplayTool file...");
+			System.exit(1);
+		}
+		for (String name : args) {
+			try {
+				long start = System.nanoTime();
+				ReplayPlayer player = new ReplayPlayer(Replay.load(new File(
+						name)), new GameAdapter() {
+				});
+				long ticks = player.runToEnd();
+				long elapsed = (System.nanoTime() - start) / 1000000L;
+				GameSimulation sim = player.getSimulation();
+				System.out.println(name + ": seed " + sim.getSeed() + ", "
+						+ ticks + " ticks, " + sim.getTime() / 1000
+						+ " game secs, " + sim.getState() + ", level "
+						+ sim.getLevel() + ", score " + sim.getScore() + " ("
+						+ elapsed + " ms)");
+			} catch (IOException e) {
+				System.err.println(name + ": " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package alien.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event spanning one frame of the game loop: the ticks run
+ * for it, rendering and putting it on the screen. Frames which blew their
+ * budget are found by filtering on overBudget, and the phase durations tell
+ * why. Like the other events it is disabled unless a recording is running,
+ * and then begin() and shouldCommit() are all but free, and the JIT removes
+ * the allocation of the event, so it can be left in production builds.
+ * 
+ * @author Ole
+ */
+@Name("alien.Frame")
+@Label("Frame")
+@Category({ "Space Invaders", "Game Loop" })
+@Description("A frame of the game loop: the ticks run for it, rendering and painting")
+@StackTrace(false)
+public final class FrameEvent extends jdk.jfr.Event {
+	@Label("Ticks")
+	@Description("Game ticks run for this frame")
+	public int ticks;
+
+	@Label("Ticks Skipped")
+	@Description("Ticks run beyond those due, to catch up")
+	public int skipped;
+
+	@Label("Update Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long updateTime;
+
+	@Label("Render Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long renderTime;
+
+	@Label("Paint Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long paintTime;
+
+	@Label("Budget")
+	@Description("The time available for each frame, the frame period")
+	@Timespan(Timespan.NANOSECONDS)
+	public long budget;
+
+	@Label("Over Budget")
+	@Description("Whether the frame took longer than the budget")
+	public boolean overBudget;
+
+	@Label("Entities")
+	@Description("Moving entities: the player, aliens, special alien and missiles")
+	public int entities;
+
+	@Label("Missiles")
+	public int missiles;
+
+	@Label("Game State")
+	public String state;
+}
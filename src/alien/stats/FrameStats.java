@@ -0,0 +1,322 @@
+package alien.stats;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timing histograms of the phases of the game loop, and counters of the work
+ * done in them. They are recorded into without allocating or locking, and
+ * read over JMX, see FrameStatsMXBean.
+ * 
+ * Each histogram has a single writer, as Histogram requires. The animation
+ * thread records the frame, update and sleep times and ends each frame with
+ * endFrame(); the thread rendering the frames, which is the animation thread
+ * too unless rendering is pipelined, records the render, paint and input
+ * latency times and ends each render with endRender(). A reset asked for
+ * over JMX is applied by each of them to its own histograms.
+ * 
+ * @see Histogram
+ * @author Ole
+ */
+public final class FrameStats implements FrameStatsMXBean {
+	public static final String OBJECT_NAME = "alien:type=FrameStats";
+	// frames skipping more ticks than this are counted with those skipping
+	// this many
+	public static final int MAX_SKIPS_COUNTED = 63;
+
+	private final Histogram frame = new Histogram();
+	private final Histogram update = new Histogram();
+	private final Histogram render = new Histogram();
+	private final Histogram paint = new Histogram();
+	private final Histogram sleep = new Histogram();
+	private final Histogram oversleep = new Histogram();
+	// the latency of the key presses which moved the player or fired, and
+	// its parts: the event delivery, the wait for a tick, and rendering
+	// and painting the frames after the tick
+	private final Histogram inputLatency = new Histogram();
+	private final Histogram inputEventDelay = new Histogram();
+	private final Histogram inputTickDelay = new Histogram();
+	private final Histogram inputFrameDelay = new Histogram();
+	private volatile long frames;
+	private volatile long framesSkipped;
+	// the number of frames by the number of ticks they skipped
+	private final long[] skips = new long[MAX_SKIPS_COUNTED + 1];
+	// the collision tests made by the simulation, and the number made
+	// before the latest reset
+	private volatile long collisionTests;
+	private long collisionTestsBefore;
+	private volatile int liveEntities;
+	// the name of the frame pacer, whose deadline error is the oversleep
+	private volatile String pacer = "";
+	// set by reset(), which is applied by the animation thread in endFrame()
+	// and by the render thread in endRender()
+	private volatile boolean resetRequested;
+	private volatile boolean renderResetRequested;
+
+	/**
+	 * Register the statistics with the platform MBean server. Failing to do
+	 * so is not fatal, so the error is only printed.
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Record the time between the start of a frame and the start of the
+	 * previous one.
+	 * 
+	 * @param nanos
+	 *            The time in ns.
+	 */
+	public void recordFrame(long nanos) {
+		frame.record(nanos);
+	}
+
+	/**
+	 * Record the time taken by a game tick.
+	 * 
+	 * @param nanos
+	 *            The time in ns.
+	 */
+	public void recordUpdate(long nanos) {
+		update.record(nanos);
+	}
+
+	/**
+	 * Record the time taken to render a frame.
+	 * 
+	 * @param nanos
+	 *            The time in ns.
+	 */
+	public void recordRender(long nanos) {
+		render.record(nanos);
+	}
+
+	/**
+	 * Record the time taken to put a frame on the screen.
+	 * 
+	 * @param nanos
+	 *            The time in ns.
+	 */
+	public void recordPaint(long nanos) {
+		paint.record(nanos);
+	}
+
+	/**
+	 * Set the name of the frame pacer the sleeps are made with.
+	 * 
+	 * @param pacer
+	 *            The name.
+	 */
+	public void setPacer(String pacer) {
+		this.pacer = pacer;
+	}
+
+	/**
+	 * Record a wait for the deadline of the next frame.
+	 * 
+	 * @param requested
+	 *            The time until the deadline, in ns.
+	 * @param actual
+	 *            The time actually waited, in ns.
+	 */
+	public void recordSleep(long requested, long actual) {
+		sleep.record(actual);
+		oversleep.record(actual - requested);
+	}
+
+	/**
+	 * Record the latency of a key press, from the time of the key event to
+	 * the end of putting on the screen the first frame which shows its
+	 * effect. All the times are System.nanoTime() values.
+	 * 
+	 * @param event
+	 *            The time of the key event, as given by KeyEvent.getWhen().
+	 * @param received
+	 *            The time the key listener received the event.
+	 * @param applied
+	 *            The time the tick which applied the key press ended.
+	 * @param shown
+	 *            The time the frame was put on the screen.
+	 */
+	public void recordInput(long event, long received, long applied,
+			long shown) {
+		inputLatency.record(shown - event);
+		inputEventDelay.record(received - event);
+		inputTickDelay.record(applied - received);
+		inputFrameDelay.record(shown - applied);
+	}
+
+	/**
+	 * End the render of a frame, applying to the render, paint and input
+	 * latency histograms any reset asked for over JMX. Must be called by the
+	 * thread recording into them.
+	 */
+	public void endRender() {
+		if (renderResetRequested) {
+			renderResetRequested = false;
+			render.reset();
+			paint.reset();
+			inputLatency.reset();
+			inputEventDelay.reset();
+			inputTickDelay.reset();
+			inputFrameDelay.reset();
+		}
+	}
+
+	/**
+	 * End a frame, applying to the animation thread's histograms and counters
+	 * any reset asked for over JMX.
+	 * 
+	 * @param skipped
+	 *            The number of ticks run for this frame beyond those due, to
+	 *            catch up.
+	 * @param collisions
+	 *            The number of collision tests made by the simulation so far.
+	 * @param entities
+	 *            The number of moving entities.
+	 */
+	public void endFrame(int skipped, long collisions, int entities) {
+		if (resetRequested) {
+			resetRequested = false;
+			frame.reset();
+			update.reset();
+			sleep.reset();
+			oversleep.reset();
+			frames = 0;
+			framesSkipped = 0;
+			for (int i = 0; i < skips.length; i++)
+				skips[i] = 0;
+			collisionTestsBefore = collisions;
+		}
+		frames++;
+		framesSkipped += skipped;
+		skips[Math.min(skipped, MAX_SKIPS_COUNTED)]++;
+		collisionTests = collisions - collisionTestsBefore;
+		liveEntities = entities;
+	}
+
+	public Histogram getFrameHistogram() {
+		return frame;
+	}
+
+	/**
+	 * Get the number of frames which skipped a given number of ticks.
+	 * 
+	 * @param skipped
+	 *            The number of ticks skipped, up to MAX_SKIPS_COUNTED.
+	 * @return The number of frames.
+	 */
+	public long getFramesSkipping(int skipped) {
+		return skips[skipped];
+	}
+
+	public Histogram getUpdateHistogram() {
+		return update;
+	}
+
+	public Histogram getRenderHistogram() {
+		return render;
+	}
+
+	public Histogram getPaintHistogram() {
+		return paint;
+	}
+
+	public Histogram getSleepHistogram() {
+		return sleep;
+	}
+
+	public Histogram getOversleepHistogram() {
+		return oversleep;
+	}
+
+	public Histogram getInputLatencyHistogram() {
+		return inputLatency;
+	}
+
+	public Histogram getInputEventDelayHistogram() {
+		return inputEventDelay;
+	}
+
+	public Histogram getInputTickDelayHistogram() {
+		return inputTickDelay;
+	}
+
+	public Histogram getInputFrameDelayHistogram() {
+		return inputFrameDelay;
+	}
+
+	public PhaseStats getInputLatency() {
+		return PhaseStats.of(inputLatency);
+	}
+
+	public PhaseStats getInputEventDelay() {
+		return PhaseStats.of(inputEventDelay);
+	}
+
+	public PhaseStats getInputTickDelay() {
+		return PhaseStats.of(inputTickDelay);
+	}
+
+	public PhaseStats getInputFrameDelay() {
+		return PhaseStats.of(inputFrameDelay);
+	}
+
+	public PhaseStats getFrame() {
+		return PhaseStats.of(frame);
+	}
+
+	public PhaseStats getUpdate() {
+		return PhaseStats.of(update);
+	}
+
+	public PhaseStats getRender() {
+		return PhaseStats.of(render);
+	}
+
+	public PhaseStats getPaint() {
+		return PhaseStats.of(paint);
+	}
+
+	public PhaseStats getSleep() {
+		return PhaseStats.of(sleep);
+	}
+
+	public PhaseStats getOversleep() {
+		return PhaseStats.of(oversleep);
+	}
+
+	public String getPacer() {
+		return pacer;
+	}
+
+	public long getFrames() {
+		return frames;
+	}
+
+	public long getFramesSkipped() {
+		return framesSkipped;
+	}
+
+	public long getCollisionTests() {
+		return collisionTests;
+	}
+
+	public int getLiveEntities() {
+		return liveEntities;
+	}
+
+	public void reset() {
+		renderResetRequested = true;
+		resetRequested = true;
+	}
+}
@@ -0,0 +1,97 @@
+package alien.stats;
+
+/**
+ * The management interface of FrameStats, registered as
+ * "alien:type=FrameStats" so that the timing of a running game can be
+ * watched with JConsole or any other JMX client.
+ * 
+ * @see FrameStats
+ * @author Ole
+ */
+public interface FrameStatsMXBean {
+	/**
+	 * @return The time between the starts of consecutive frames.
+	 */
+	public PhaseStats getFrame();
+
+	/**
+	 * @return The time taken by each game tick.
+	 */
+	public PhaseStats getUpdate();
+
+	/**
+	 * @return The time taken to render each frame into the back buffer.
+	 */
+	public PhaseStats getRender();
+
+	/**
+	 * @return The time taken to put each frame on the screen.
+	 */
+	public PhaseStats getPaint();
+
+	/**
+	 * @return The time slept after each frame.
+	 */
+	public PhaseStats getSleep();
+
+	/**
+	 * @return The time slept after each frame beyond the deadline of the
+	 *         next one, i.e. the error of the frame pacer.
+	 */
+	public PhaseStats getOversleep();
+
+	/**
+	 * @return The name of the frame pacer, as given on the command line.
+	 */
+	public String getPacer();
+
+	/**
+	 * @return The time from a key press which moved the player or fired to
+	 *         the end of painting the first frame showing it.
+	 */
+	public PhaseStats getInputLatency();
+
+	/**
+	 * @return The part of the input latency before the key listener received
+	 *         the key event, in whole ms.
+	 */
+	public PhaseStats getInputEventDelay();
+
+	/**
+	 * @return The part of the input latency from the key listener to the end
+	 *         of the tick applying the key press.
+	 */
+	public PhaseStats getInputTickDelay();
+
+	/**
+	 * @return The part of the input latency from the end of the tick applying
+	 *         the key press to the end of painting the frame showing it.
+	 */
+	public PhaseStats getInputFrameDelay();
+
+	/**
+	 * @return The number of frames rendered.
+	 */
+	public long getFrames();
+
+	/**
+	 * @return The number of ticks run without rendering a frame, to catch up.
+	 */
+	public long getFramesSkipped();
+
+	/**
+	 * @return The number of collision tests made by the simulation.
+	 */
+	public long getCollisionTests();
+
+	/**
+	 * @return The number of moving entities in the latest frame: the player,
+	 *         the aliens, the special alien and the missiles.
+	 */
+	public int getLiveEntities();
+
+	/**
+	 * Clear the histograms and counters, e.g. to measure a single level.
+	 */
+	public void reset();
+}
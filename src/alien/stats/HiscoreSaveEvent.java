@@ -0,0 +1,29 @@
+package alien.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event spanning a save of the hiscores, including the wait
+ * for the lock shared with other game instances.
+ * 
+ * @author Ole
+ */
+@Name("alien.HiscoreSave")
+@Label("Hiscore Save")
+@Category({ "Space Invaders", "Hiscores" })
+@Description("The hiscores were saved")
+public final class HiscoreSaveEvent extends jdk.jfr.Event {
+	@Label("Scores")
+	@Description("Scores appended to the log")
+	public int scores;
+
+	@Label("Games")
+	@Description("Games merged into the sketch")
+	public long games;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+}
@@ -0,0 +1,167 @@
+package alien.stats;
+
+/**
+ * A histogram of non-negative values, e.g. durations in ns, with buckets
+ * whose width grows with the values they hold, so that any value from 1 ns
+ * to hours is kept to within 1/16 (about 6%) of its size in a fixed array.
+ * Recording a value is a few shifts and an array increment, and never
+ * allocates, so it can be done for every tick.
+ * 
+ * A histogram is written by one thread only. Other threads may read it at
+ * any time, e.g. over JMX, without any locking, at the cost of seeing
+ * slightly stale or inconsistent values.
+ * 
+ * @author Ole
+ */
+public final class Histogram {
+	// each power of two is split into 1 << SUB_BITS buckets
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+	private final int[] counts = new int[BUCKETS];
+	private long count;
+	private long max;
+	private long total;
+
+	/**
+	 * Add a value. Negative values are counted as 0.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[index(value)]++;
+		total += value;
+		if (value > max)
+			max = value;
+		count++;
+	}
+
+	/**
+	 * Remove all the values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = 0;
+		total = 0;
+		max = 0;
+		count = 0;
+	}
+
+	/**
+	 * Add the values of another histogram.
+	 * 
+	 * @param other
+	 *            A histogram.
+	 */
+	public void add(Histogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		total += other.total;
+		if (other.max > max)
+			max = other.max;
+		count += other.count;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the mean of the values.
+	 * 
+	 * @return The mean, or 0 if there are none.
+	 */
+	public double getMean() {
+		long n = count;
+		return n == 0 ? 0.0 : (double) total / n;
+	}
+
+	/**
+	 * Get the value below which a given percentage of the values fall.
+	 * 
+	 * @param percentile
+	 *            The percentage, from 0 to 100.
+	 * @return The middle of the bucket holding the value, but no more than the
+	 *         maximum, or 0 if there are no values.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			n += counts[i];
+		if (n == 0)
+			return 0;
+		long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= target)
+				return Math.min(middle(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * Get the number of buckets, for iterating over them with getBucketCount
+	 * and getBucketValue.
+	 * 
+	 * @return The number of buckets.
+	 */
+	public int getBuckets() {
+		return BUCKETS;
+	}
+
+	/**
+	 * Get the number of values in a bucket.
+	 * 
+	 * @param bucket
+	 *            A bucket.
+	 * @return The number of values.
+	 */
+	public int getBucketCount(int bucket) {
+		return counts[bucket];
+	}
+
+	/**
+	 * Get the lowest value which falls into a bucket.
+	 * 
+	 * @param bucket
+	 *            A bucket.
+	 * @return The lowest value.
+	 */
+	public long getBucketValue(int bucket) {
+		if (bucket < SUB_COUNT)
+			return bucket;
+		int shift = (bucket >> SUB_BITS) - 1;
+		return (long) (SUB_COUNT + (bucket & (SUB_COUNT - 1))) << shift;
+	}
+
+	/**
+	 * Get the middle of the values which fall into a bucket.
+	 */
+	private long middle(int bucket) {
+		if (bucket < SUB_COUNT)
+			return bucket;
+		int shift = (bucket >> SUB_BITS) - 1;
+		return getBucketValue(bucket) + ((1L << shift) >> 1);
+	}
+
+	/**
+	 * Get the bucket of a value: the values below SUB_COUNT each have their
+	 * own, and each power of two above is split into SUB_COUNT buckets.
+	 */
+	private static int index(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return ((shift + 1) << SUB_BITS)
+				+ (int) ((value >>> shift) & (SUB_COUNT - 1));
+	}
+}
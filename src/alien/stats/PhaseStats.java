@@ -0,0 +1,80 @@
+package alien.stats;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the timing of one phase of the game loop, as shown over JMX.
+ * All the times are in microseconds.
+ * 
+ * @see FrameStatsMXBean
+ * @author Ole
+ */
+public final class PhaseStats {
+	private final long count;
+	private final double mean;
+	private final double p50;
+	private final double p99;
+	private final double p999;
+	private final double max;
+
+	@ConstructorProperties({ "count", "mean", "p50", "p99", "p999", "max" })
+	public PhaseStats(long count, double mean, double p50, double p99,
+			double p999, double max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	/**
+	 * Take a snapshot of a histogram of durations in ns.
+	 * 
+	 * @param histogram
+	 *            The histogram.
+	 * @return The snapshot.
+	 */
+	public static PhaseStats of(Histogram histogram) {
+		return new PhaseStats(histogram.getCount(),
+				histogram.getMean() / 1000.0,
+				histogram.getValueAtPercentile(50.0) / 1000.0,
+				histogram.getValueAtPercentile(99.0) / 1000.0,
+				histogram.getValueAtPercentile(99.9) / 1000.0,
+				histogram.getMax() / 1000.0);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getP50() {
+		return p50;
+	}
+
+	public double getP99() {
+		return p99;
+	}
+
+	public double getP999() {
+		return p999;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public String toString() {
+		return "count " + count + ", mean " + format(mean) + ", p50 "
+				+ format(p50) + ", p99 " + format(p99) + ", p999 "
+				+ format(p999) + ", max " + format(max) + " us";
+	}
+
+	private static String format(double micros) {
+		return String.valueOf(Math.round(micros * 10.0) / 10.0);
+	}
+}
@@ -0,0 +1,263 @@
+package alien.stats;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A report of the performance of a session, written as JSON when the game
+ * is closed, so that the frame pacing of different machines can be compared.
+ * It holds the distributions of the frame and phase times, the input
+ * latency and the ticks skipped per frame from FrameStats, the garbage
+ * collections and the bytes allocated by the animation thread during the
+ * session, and the FPS and UPS of every second.
+ * 
+ * Nothing is written during the session: the samples are kept in arrays,
+ * and the report is written in one go by save().
+ * 
+ * @see FrameStats
+ * @author Ole
+ */
+public final class SessionReport {
+	private final FrameStats stats;
+	private final long period;
+	private final Date start = new Date();
+	private long startTime;
+
+	// garbage collections and allocations at the start, and during the
+	// session once it has finished
+	private List<GarbageCollectorMXBean> collectors;
+	private long[] collections;
+	private long[] collectionMillis;
+	private long allocatedBytes = -1L;
+	private long duration;
+
+	// the FPS and UPS of each second
+	private double[] fps = new double[64];
+	private double[] ups = new double[64];
+	private int seconds;
+	// the counts at the previous sample
+	private long sampledFrames;
+	private long sampledTicks;
+
+	/**
+	 * Create a report of a session.
+	 * 
+	 * @param stats
+	 *            The statistics recorded by the game loop.
+	 * @param period
+	 *            The frame period, in ns.
+	 */
+	public SessionReport(FrameStats stats, long period) {
+		this.stats = stats;
+		this.period = period;
+	}
+
+	/**
+	 * Start the session. Must be called by the animation thread, whose
+	 * allocations are counted.
+	 */
+	public void start() {
+		startTime = System.nanoTime();
+		collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		collections = new long[collectors.size()];
+		collectionMillis = new long[collectors.size()];
+		for (int i = 0; i < collections.length; i++) {
+			collections[i] = collectors.get(i).getCollectionCount();
+			collectionMillis[i] = collectors.get(i).getCollectionTime();
+		}
+		allocatedBytes = -threadAllocatedBytes();
+	}
+
+	/**
+	 * Add the FPS and UPS of the time since the previous sample. A sample
+	 * covering no time is skipped, as its rates cannot be worked out; its
+	 * frames and ticks count towards the next one.
+	 * 
+	 * @param frames
+	 *            The number of frames rendered since the start.
+	 * @param ticks
+	 *            The number of ticks run since the start.
+	 * @param nanos
+	 *            The time since the previous sample, in ns.
+	 */
+	public void sample(long frames, long ticks, long nanos) {
+		if (nanos <= 0)
+			return;
+		if (seconds == fps.length) {
+			fps = Arrays.copyOf(fps, seconds * 2);
+			ups = Arrays.copyOf(ups, seconds * 2);
+		}
+		fps[seconds] = (frames - sampledFrames) * 1000000000.0 / nanos;
+		ups[seconds] = (ticks - sampledTicks) * 1000000000.0 / nanos;
+		seconds++;
+		sampledFrames = frames;
+		sampledTicks = ticks;
+	}
+
+	/**
+	 * Finish the session. Must be called by the animation thread.
+	 */
+	public void finish() {
+		duration = System.nanoTime() - startTime;
+		for (int i = 0; i < collections.length; i++) {
+			collections[i] = collectors.get(i).getCollectionCount()
+					- collections[i];
+			collectionMillis[i] = collectors.get(i).getCollectionTime()
+					- collectionMillis[i];
+		}
+		long allocated = threadAllocatedBytes();
+		allocatedBytes = allocated < 0 ? -1L : allocated + allocatedBytes;
+	}
+
+	/**
+	 * Write the report into a directory, named after the time the session
+	 * started.
+	 * 
+	 * @param dir
+	 *            The directory, which is created if it does not exist.
+	 * @return The file written.
+	 * @throws IOException
+	 *             If a writing error is encountered.
+	 */
+	public File save(File dir) throws IOException {
+		dir.mkdirs();
+		File file = new File(dir, new SimpleDateFormat("yyyyMMdd-HHmmss-SSS")
+				.format(start) + ".json");
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Write the report as JSON. Times are in ns unless the name says
+	 * otherwise.
+	 * 
+	 * @param out
+	 *            The output, which is not closed.
+	 * @throws IOException
+	 *             If a writing error is encountered.
+	 */
+	public void write(Writer out) throws IOException {
+		out.write("{\n");
+		out.write("  \"start\": \""
+				+ new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ")
+						.format(start) + "\",\n");
+		out.write("  \"os\": \"" + escape(System.getProperty("os.name") + " "
+				+ System.getProperty("os.arch")) + "\",\n");
+		out.write("  \"java\": \""
+				+ escape(System.getProperty("java.vm.name") + " "
+						+ System.getProperty("java.version")) + "\",\n");
+		out.write("  \"processors\": "
+				+ Runtime.getRuntime().availableProcessors() + ",\n");
+		out.write("  \"duration\": " + duration + ",\n");
+		out.write("  \"period\": " + period + ",\n");
+		out.write("  \"pacer\": \"" + escape(stats.getPacer()) + "\",\n");
+		out.write("  \"frames\": " + stats.getFrames() + ",\n");
+		out.write("  \"ticksSkipped\": " + stats.getFramesSkipped() + ",\n");
+		writeHistogram(out, "frameTime", stats.getFrameHistogram());
+		writeHistogram(out, "updateTime", stats.getUpdateHistogram());
+		writeHistogram(out, "renderTime", stats.getRenderHistogram());
+		writeHistogram(out, "paintTime", stats.getPaintHistogram());
+		writeHistogram(out, "sleepTime", stats.getSleepHistogram());
+		writeHistogram(out, "oversleepTime", stats.getOversleepHistogram());
+		writeHistogram(out, "inputLatency", stats.getInputLatencyHistogram());
+		writeHistogram(out, "inputEventDelay", stats
+				.getInputEventDelayHistogram());
+		writeHistogram(out, "inputTickDelay", stats
+				.getInputTickDelayHistogram());
+		writeHistogram(out, "inputFrameDelay", stats
+				.getInputFrameDelayHistogram());
+
+		// frames by the number of ticks they skipped, up to the last non-zero
+		int last = 0;
+		for (int i = 0; i <= FrameStats.MAX_SKIPS_COUNTED; i++)
+			if (stats.getFramesSkipping(i) > 0)
+				last = i;
+		out.write("  \"framesBySkippedTicks\": [");
+		for (int i = 0; i <= last; i++)
+			out.write((i > 0 ? ", " : "") + stats.getFramesSkipping(i));
+		out.write("],\n");
+
+		// collection times are the total time of the collections, which
+		// is the pause time for stop-the-world collectors
+		out.write("  \"gc\": [");
+		for (int i = 0; i < collections.length; i++) {
+			out.write((i > 0 ? "," : "") + "\n    {\"name\": \""
+					+ escape(collectors.get(i).getName())
+					+ "\", \"collections\": " + collections[i]
+					+ ", \"timeMillis\": " + collectionMillis[i] + "}");
+		}
+		out.write("\n  ],\n");
+		out.write("  \"allocatedBytes\": " + allocatedBytes + ",\n");
+
+		out.write("  \"perSecond\": {\n    \"fps\": [");
+		writeSeries(out, fps);
+		out.write("],\n    \"ups\": [");
+		writeSeries(out, ups);
+		out.write("]\n  }\n}\n");
+	}
+
+	private void writeHistogram(Writer out, String name, Histogram histogram)
+			throws IOException {
+		out.write("  \"" + name + "\": {\"count\": " + histogram.getCount()
+				+ ", \"mean\": " + Math.round(histogram.getMean())
+				+ ", \"p50\": " + histogram.getValueAtPercentile(50.0)
+				+ ", \"p90\": " + histogram.getValueAtPercentile(90.0)
+				+ ", \"p99\": " + histogram.getValueAtPercentile(99.0)
+				+ ", \"p999\": " + histogram.getValueAtPercentile(99.9)
+				+ ", \"max\": " + histogram.getMax() + ",\n");
+		// the non-empty buckets, as [lowest value, count]
+		out.write("    \"buckets\": [");
+		boolean first = true;
+		for (int i = 0; i < histogram.getBuckets(); i++) {
+			int count = histogram.getBucketCount(i);
+			if (count == 0)
+				continue;
+			out.write((first ? "" : ", ") + "[" + histogram.getBucketValue(i)
+					+ ", " + count + "]");
+			first = false;
+		}
+		out.write("]},\n");
+	}
+
+	private void writeSeries(Writer out, double[] values) throws IOException {
+		for (int i = 0; i < seconds; i++)
+			out.write((i > 0 ? ", " : "")
+					+ Math.round(values[i] * 100.0) / 100.0);
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * Get the bytes allocated by the current thread so far.
+	 * 
+	 * @return The number of bytes, or -1 if it is not known.
+	 */
+	private static long threadAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+			if (sun.isThreadAllocatedMemorySupported()
+					&& sun.isThreadAllocatedMemoryEnabled())
+				return sun.getThreadAllocatedBytes(Thread.currentThread()
+						.getId());
+		}
+		return -1L;
+	}
+}
@@ -0,0 +1,27 @@
+package alien.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning a call to Sound.play, which restarts the
+ * sound's clip, to show whether starting a sound holds up a frame.
+ * 
+ * @author Ole
+ */
+@Name("alien.Sound")
+@Label("Sound")
+@Category({ "Space Invaders", "Game" })
+@Description("A sound was started")
+@StackTrace(false)
+public final class SoundEvent extends jdk.jfr.Event {
+	@Label("Sound")
+	public String sound;
+
+	@Label("Played")
+	@Description("False if sounds are disabled, e.g. as there is no audio device")
+	public boolean played;
+}
@@ -0,0 +1,31 @@
+package alien.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for each change of state of a GameSimulation.
+ * 
+ * @author Ole
+ */
+@Name("alien.StateChange")
+@Label("State Change")
+@Category({ "Space Invaders", "Game" })
+@Description("The game simulation changed state")
+@StackTrace(false)
+public final class StateChangeEvent extends jdk.jfr.Event {
+	@Label("From")
+	public String from;
+
+	@Label("To")
+	public String to;
+
+	@Label("Level")
+	public int level;
+
+	@Label("Score")
+	public int score;
+}
@@ -0,0 +1,212 @@
+package alien.hiscore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the skip list of a Leaderboard against a plain sorted list of the
+ * same scores.
+ * 
+ * @author Ole
+ */
+class LeaderboardTest {
+	private static final String[] NAMES = { "Ole", "A", "Zoë", "Ærø",
+			"a much longer name than most", "x☃y" };
+
+	/**
+	 * The model: the scores from best to worst, equal scores in the order
+	 * they were added.
+	 */
+	private static final class Model {
+		final List<Integer> scores = new ArrayList<Integer>();
+		final List<String> names = new ArrayList<String>();
+
+		void add(String name, int points) {
+			int i = 0;
+			while (i < scores.size() && scores.get(i) >= points)
+				i++;
+			scores.add(i, points);
+			names.add(i, name);
+		}
+
+		int rank(int points) {
+			int rank = 1;
+			for (int score : scores)
+				if (score >= points)
+					rank++;
+			return rank;
+		}
+	}
+
+	@Test
+	void emptyBoard() {
+		Leaderboard board = new Leaderboard();
+		assertEquals(0, board.size());
+		assertEquals(1, board.rank(0));
+		assertEquals(-1, board.select(0));
+		assertEquals(-1, board.select(1));
+	}
+
+	@Test
+	void addAndRankMatchSortedList() {
+		for (long seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			Leaderboard board = new Leaderboard();
+			Model model = new Model();
+			List<Integer> entries = new ArrayList<Integer>();
+			List<Integer> entryScores = new ArrayList<Integer>();
+			// a small range of scores, so there are many ties
+			int range = 1 + random.nextInt(200);
+			int count = 1 + random.nextInt(2000);
+			for (int i = 0; i < count; i++) {
+				int points = random.nextInt(range) - range / 4;
+				String name = NAMES[random.nextInt(NAMES.length)] + i;
+				int probe = random.nextInt(range + 2) - range / 4 - 1;
+				assertEquals(model.rank(probe), board.rank(probe));
+
+				entries.add(board.add(name, points));
+				entryScores.add(points);
+				model.add(name, points);
+				assertEquals(model.scores.size(), board.size());
+			}
+			checkBoard(board, model);
+
+			// ties are ranked in the order they were added, so the entries of
+			// equal scores must come out in the order of entries
+			for (int i = 0; i < entries.size(); i += 1 + random.nextInt(10)) {
+				int entry = entries.get(i);
+				int rank = board.getRank(entry);
+				assertEquals(entry, board.select(rank));
+				assertEquals((int) entryScores.get(i), board.getScore(entry));
+			}
+		}
+	}
+
+	@Test
+	void extremeScores() {
+		Leaderboard board = new Leaderboard();
+		Model model = new Model();
+		int[] points = { Integer.MAX_VALUE, Integer.MIN_VALUE, 0,
+				Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+		for (int i = 0; i < points.length; i++) {
+			board.add("p" + i, points[i]);
+			model.add("p" + i, points[i]);
+		}
+		checkBoard(board, model);
+		assertEquals(3, board.rank(Integer.MAX_VALUE));
+		assertEquals(7, board.rank(Integer.MIN_VALUE));
+	}
+
+	@Test
+	void longNamesAreCut() {
+		Leaderboard board = new Leaderboard();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 300; i++)
+			sb.append((char) ('a' + i % 26));
+		int entry = board.add(sb.toString(), 5);
+		assertEquals(sb.substring(0, 255), board.getName(entry));
+	}
+
+	@Test
+	void loadMatchesAdd() throws Exception {
+		for (long seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			Model model = new Model();
+			StringBuilder text = new StringBuilder();
+			int count = random.nextInt(500);
+			for (int i = 0; i < count; i++) {
+				if (random.nextInt(10) == 0)
+					text.append("#generation ").append(i).append('\n');
+				if (random.nextInt(10) == 0)
+					text.append(random.nextBoolean() ? "\n" : "\r\n");
+				String name = NAMES[random.nextInt(NAMES.length)] + i;
+				int points = random.nextInt(2000) - 100;
+				model.add(name, points);
+				text.append(name).append('\t').append(points);
+				// the last line need not end
+				if (i < count - 1 || random.nextBoolean())
+					text.append(random.nextBoolean() ? "\n" : "\r\n");
+			}
+			byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+			Leaderboard board = new Leaderboard();
+			assertEquals(count, board.load(new ByteArrayInputStream(bytes)));
+			checkBoard(board, model);
+
+			// lines split across reads
+			board = new Leaderboard();
+			assertEquals(count, board.load(new TrickleStream(bytes, random)));
+			checkBoard(board, model);
+		}
+	}
+
+	@Test
+	void loadRejectsBadLines() {
+		String[] bad = { "name\n", "name\t\n", "name\t12x\n", "name\t--1\n",
+				"name\t1-\n", "name\t99999999999\n", "ok\t1\nno score",
+				"name\t" };
+		for (String text : bad) {
+			final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			assertThrows(ScoreFormatException.class, () -> new Leaderboard()
+					.load(new ByteArrayInputStream(bytes)), text);
+		}
+	}
+
+	/**
+	 * Check every rank of a board against the model.
+	 */
+	private static void checkBoard(Leaderboard board, Model model) {
+		assertEquals(model.scores.size(), board.size());
+		int entry = board.select(1);
+		for (int rank = 1; rank <= model.scores.size(); rank++) {
+			assertEquals(entry, board.select(rank));
+			assertEquals(rank, board.getRank(entry));
+			assertEquals((int) model.scores.get(rank - 1), board
+					.getScore(entry));
+			assertEquals(model.names.get(rank - 1), board.getName(entry));
+			entry = board.nextEntry(entry);
+		}
+		assertEquals(-1, entry);
+		assertEquals(-1, board.select(model.scores.size() + 1));
+	}
+
+	/**
+	 * A stream which returns a few bytes at a time.
+	 */
+	private static final class TrickleStream extends InputStream {
+		private final byte[] bytes;
+		private final Random random;
+		private int position;
+
+		TrickleStream(byte[] bytes, Random random) {
+			this.bytes = bytes;
+			this.random = random;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return position < bytes.length ? bytes[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position == bytes.length)
+				return -1;
+			int n = Math.min(Math.min(len, 1 + random.nextInt(7)),
+					bytes.length - position);
+			System.arraycopy(bytes, position, b, off, n);
+			position += n;
+			return n;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package alien.hiscore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the estimates of a QuantileSketch against the exact ranks of the
+ * values added, and that writing, reading and merging sketches keeps them
+ * within the same bound.
+ * 
+ * @author Ole
+ */
+class QuantileSketchTest {
+	// the largest rank error allowed, as a fraction of the values added; the
+	// class promises about 1% with the default k
+	private static final double EPSILON = 0.015;
+
+	@Test
+	void emptySketch() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertEquals(0, sketch.getCount());
+		assertEquals(0.0, sketch.rank(5));
+		assertEquals(0, sketch.quantile(0.5));
+	}
+
+	@Test
+	void exactWhileSmall() {
+		QuantileSketch sketch = new QuantileSketch();
+		int[] values = randomValues(new Random(1), 100, 1000);
+		for (int value : values)
+			sketch.add(value);
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		// nothing has been compacted yet, so the counts are exact
+		for (int probe = -1; probe <= 1001; probe++)
+			assertEquals(exactBelow(sorted, probe), sketch.countBelow(probe));
+	}
+
+	@Test
+	void rankErrorIsBounded() {
+		for (long seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			int n = 1000 + random.nextInt(200000);
+			int[] values = randomValues(random, n, 1 + random.nextInt(1000000));
+			QuantileSketch sketch = new QuantileSketch();
+			for (int value : values)
+				sketch.add(value);
+			assertEquals(n, sketch.getCount());
+			checkBound(sketch, values);
+		}
+	}
+
+	@Test
+	void sortedInputs() {
+		// the worst case for many sketches: values arriving in order
+		int n = 100000;
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++)
+			values[i] = i;
+		QuantileSketch up = new QuantileSketch();
+		QuantileSketch down = new QuantileSketch();
+		for (int i = 0; i < n; i++) {
+			up.add(i);
+			down.add(n - 1 - i);
+		}
+		checkBound(up, values);
+		checkBound(down, values);
+	}
+
+	@Test
+	void writeReadRoundTrip() throws IOException {
+		for (long seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			int n = random.nextInt(50000);
+			int[] values = randomValues(random, n, 1 + random.nextInt(100000));
+			// include the extremes, which the deltas must survive
+			if (n > 2) {
+				values[0] = Integer.MIN_VALUE;
+				values[1] = Integer.MAX_VALUE;
+			}
+			QuantileSketch sketch = new QuantileSketch(8 + random.nextInt(400));
+			for (int value : values)
+				sketch.add(value);
+
+			QuantileSketch copy = roundTrip(sketch);
+			assertEquals(sketch.getCount(), copy.getCount());
+			for (int i = 0; i < 200; i++) {
+				int probe = random.nextInt();
+				assertEquals(sketch.countBelow(probe), copy.countBelow(probe));
+			}
+			assertEquals(sketch.countBelow(Integer.MAX_VALUE), copy
+					.countBelow(Integer.MAX_VALUE));
+			// writing again gives the same bytes
+			assertEquals(Arrays.toString(write(sketch)), Arrays
+					.toString(write(copy)));
+		}
+	}
+
+	@Test
+	void mergeKeepsBound() throws IOException {
+		for (long seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			int parts = 2 + random.nextInt(6);
+			QuantileSketch merged = new QuantileSketch();
+			int[] all = new int[0];
+			for (int p = 0; p < parts; p++) {
+				// each part has its own range, as on different machines
+				int offset = random.nextInt(100000);
+				int[] values = randomValues(random, random.nextInt(60000),
+						1 + random.nextInt(100000));
+				QuantileSketch part = new QuantileSketch();
+				for (int i = 0; i < values.length; i++) {
+					values[i] += offset;
+					part.add(values[i]);
+				}
+				// merge a copy read back from disk, as ScoreLog does
+				merged.merge(roundTrip(part));
+				int[] grown = Arrays.copyOf(all, all.length + values.length);
+				System.arraycopy(values, 0, grown, all.length, values.length);
+				all = grown;
+			}
+			assertEquals(all.length, merged.getCount());
+			checkBound(merged, all);
+			checkBound(roundTrip(merged), all);
+		}
+	}
+
+	@Test
+	void readRejectsMalformedSketches() throws IOException {
+		QuantileSketch sketch = new QuantileSketch();
+		int[] values = randomValues(new Random(3), 10000, 5000);
+		for (int value : values)
+			sketch.add(value);
+		byte[] bytes = write(sketch);
+
+		// every truncation fails, rather than giving a smaller sketch
+		for (int length = 0; length < bytes.length; length++) {
+			final byte[] cut = Arrays.copyOf(bytes, length);
+			assertThrows(IOException.class, () -> read(cut), "length "
+					+ length);
+		}
+
+		// a count which does not match the values; the count is the varint
+		// after k
+		final byte[] wrongCount = bytes.clone();
+		wrongCount[2] ^= 1;
+		assertThrows(IOException.class, () -> read(wrongCount));
+
+		// k out of range
+		final byte[] badK = bytes.clone();
+		badK[0] = 0;
+		badK[1] = 1;
+		assertThrows(IOException.class, () -> read(badK));
+	}
+
+	/**
+	 * Check the ranks and the quantiles of a sketch against the values added
+	 * to it.
+	 */
+	private static void checkBound(QuantileSketch sketch, int[] values) {
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int n = sorted.length;
+		long bound = (long) Math.ceil(EPSILON * n);
+		for (int i = 0; i <= 200; i++) {
+			int probe = sorted[(int) ((long) (n - 1) * i / 200)];
+			long exact = exactBelow(sorted, probe);
+			long estimate = sketch.countBelow(probe);
+			assertTrue(Math.abs(estimate - exact) <= bound, "rank of "
+					+ probe + ": " + estimate + " instead of " + exact
+					+ " of " + n);
+		}
+		for (int i = 0; i <= 100; i++) {
+			double rank = i / 100.0;
+			int value = sketch.quantile(rank);
+			// the true rank of the value returned brackets the one asked for
+			long below = exactBelow(sorted, value);
+			long atMost = exactBelow(sorted, value + 1L);
+			double target = rank * n;
+			assertTrue(below - bound <= target && target <= atMost + bound,
+					"quantile " + rank + ": " + value + " has ranks " + below
+							+ " to " + atMost + " of " + n);
+		}
+	}
+
+	/**
+	 * Count the values below a value, in a sorted array.
+	 */
+	private static long exactBelow(int[] sorted, long value) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < value)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static int[] randomValues(Random random, int n, int range) {
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++)
+			values[i] = random.nextInt(range);
+		return values;
+	}
+
+	private static byte[] write(QuantileSketch sketch) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sketch.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static QuantileSketch read(byte[] bytes) throws IOException {
+		return QuantileSketch.read(new DataInputStream(new ByteArrayInputStream(
+				bytes)));
+	}
+
+	private static QuantileSketch roundTrip(QuantileSketch sketch)
+			throws IOException {
+		return read(write(sketch));
+	}
+}
@@ -0,0 +1,220 @@
+package alien.hiscore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a ScoreLog keeps every score appended to it through
+ * compactions, and that a log with a truncated or corrupt tail loses only
+ * the damaged records.
+ * 
+ * @author Ole
+ */
+class ScoreLogTest {
+	// the number of scores kept in the snapshot
+	private static final int LENGTH = 10;
+	// the length of the log's header
+	private static final int HEADER_LENGTH = 12;
+
+	@TempDir
+	File dir;
+
+	@Test
+	void keepsEveryScoreThroughCompactions() throws Exception {
+		for (long seed = 0; seed < 5; seed++) {
+			Random random = new Random(seed);
+			String filename = new File(dir, "scores" + seed + ".txt")
+					.getPath();
+			ScoreLog log = new ScoreLog(filename);
+			List<Score> model = new ArrayList<Score>();
+			int batches = 1 + random.nextInt(40);
+			for (int b = 0; b < batches; b++) {
+				List<Score> added = new ArrayList<Score>();
+				int count = 1 + random.nextInt(ScoreLog.COMPACT_THRESHOLD);
+				for (int i = 0; i < count; i++)
+					added.add(new Score("p" + b + "." + i + (i % 3 == 0 ? "ø"
+							: ""), random.nextInt(1000)));
+				model.addAll(added);
+				List<Score> scores = new ArrayList<Score>();
+				log.append(added, scores, LENGTH);
+				checkBest(model, scores);
+
+				// a new instance, as another process, sees the same scores
+				List<Score> read = new ArrayList<Score>();
+				new ScoreLog(filename).read(read);
+				checkBest(model, read);
+			}
+			checkAll(model, filename);
+		}
+	}
+
+	@Test
+	void truncatedTailLosesOnlyTheLastRecord() throws Exception {
+		String filename = new File(dir, "scores.txt").getPath();
+		File logFile = new File(dir, "scores.log");
+		ScoreLog log = new ScoreLog(filename);
+		List<Score> model = new ArrayList<Score>();
+		for (int i = 0; i < 5; i++)
+			model.add(new Score("player" + i, 100 * i));
+		log.append(model, new ArrayList<Score>(), LENGTH);
+		long length = logFile.length();
+		// the last record holds "player4"
+		int lastRecord = 1 + 7 + 4 + 4;
+
+		for (int cut = 1; cut < lastRecord; cut++) {
+			// a record only partly written, as if the game had crashed
+			truncate(logFile, length - cut);
+			List<Score> read = new ArrayList<Score>();
+			log.read(read);
+			assertEquals(names(model.subList(0, 4)), names(read));
+			// restore the full record for the next cut
+			truncate(logFile, length - lastRecord);
+			log.append(Collections.singletonList(model.get(4)),
+					new ArrayList<Score>(), LENGTH);
+			assertEquals(length, logFile.length());
+		}
+
+		// appending cuts off the partial record first, even where the new
+		// record is shorter
+		truncate(logFile, length - 1);
+		List<Score> added = Collections.singletonList(new Score("x", 7));
+		List<Score> scores = new ArrayList<Score>();
+		log.append(added, scores, LENGTH);
+		assertEquals(length - lastRecord + 1 + 1 + 4 + 4, logFile.length());
+		List<Score> expected = new ArrayList<Score>(model.subList(0, 4));
+		expected.add(added.get(0));
+		assertEquals(names(expected), names(scores));
+		List<Score> read = new ArrayList<Score>();
+		log.read(read);
+		assertEquals(names(expected), names(read));
+	}
+
+	@Test
+	void corruptRecordLosesItAndTheRecordsAfterIt() throws Exception {
+		String filename = new File(dir, "scores.txt").getPath();
+		File logFile = new File(dir, "scores.log");
+		ScoreLog log = new ScoreLog(filename);
+		List<Score> model = new ArrayList<Score>();
+		for (int i = 0; i < 6; i++)
+			model.add(new Score("n" + i, i));
+		log.append(model, new ArrayList<Score>(), LENGTH);
+		byte[] good = Files.readAllBytes(logFile.toPath());
+		// each record is 1 + 2 + 4 + 4 bytes
+		int recordLength = 11;
+
+		Random random = new Random(7);
+		for (int record = 0; record < model.size(); record++) {
+			for (int trial = 0; trial < 5; trial++) {
+				byte[] bad = good.clone();
+				int offset = HEADER_LENGTH + record * recordLength
+						+ random.nextInt(recordLength);
+				bad[offset] ^= 1 << random.nextInt(8);
+				Files.write(logFile.toPath(), bad);
+				List<Score> read = new ArrayList<Score>();
+				log.read(read);
+				assertEquals(names(model.subList(0, record)), names(read),
+						"record " + record + " byte " + offset);
+			}
+		}
+
+		// the next append replaces the damaged records
+		byte[] bad = good.clone();
+		bad[HEADER_LENGTH + 2 * recordLength + 1] ^= 0x40;
+		Files.write(logFile.toPath(), bad);
+		List<Score> added = Collections.singletonList(new Score("new", 99));
+		log.append(added, new ArrayList<Score>(), LENGTH);
+		List<Score> read = new ArrayList<Score>();
+		log.read(read);
+		List<Score> expected = new ArrayList<Score>(model.subList(0, 2));
+		expected.add(added.get(0));
+		assertEquals(names(expected), names(read));
+	}
+
+	@Test
+	void unfinishedArchiveIsCutOff() throws Exception {
+		String filename = new File(dir, "scores.txt").getPath();
+		File archiveFile = new File(dir, "scores.archive");
+		ScoreLog log = new ScoreLog(filename);
+		List<Score> model = new ArrayList<Score>();
+		for (int i = 0; i < ScoreLog.COMPACT_THRESHOLD; i++)
+			model.add(new Score("a" + i, i * 3));
+		log.append(model, new ArrayList<Score>(), LENGTH);
+		long archived = archiveFile.length();
+
+		// a compaction which wrote to the archive, but never replaced the
+		// snapshot
+		Files.write(archiveFile.toPath(), "ghost\t12345\n"
+				.getBytes(StandardCharsets.UTF_8),
+				java.nio.file.StandardOpenOption.APPEND);
+		checkAll(model, filename);
+		assertEquals(archived, archiveFile.length());
+	}
+
+	/**
+	 * Check that the best scores of a list read from the log are the best of
+	 * the model.
+	 */
+	private static void checkBest(List<Score> model, List<Score> scores) {
+		assertEquals(best(model), best(scores));
+	}
+
+	/**
+	 * Check that a leaderboard read from the log holds every score of the
+	 * model.
+	 */
+	private static void checkAll(List<Score> model, String filename)
+			throws IOException, ScoreFormatException {
+		Leaderboard board = new Leaderboard();
+		new ScoreLog(filename).readAll(board);
+		List<String> read = new ArrayList<String>();
+		for (int entry = board.select(1); entry != -1; entry = board
+				.nextEntry(entry))
+			read.add(board.getName(entry) + "\t" + board.getScore(entry));
+		List<String> expected = new ArrayList<String>();
+		for (Score score : model)
+			expected.add(score.toString());
+		Collections.sort(read);
+		Collections.sort(expected);
+		assertEquals(expected, read);
+	}
+
+	/**
+	 * Get the scores the snapshot would keep, best first.
+	 */
+	private static List<Integer> best(List<Score> scores) {
+		List<Integer> points = new ArrayList<Integer>();
+		for (Score score : scores)
+			points.add(score.getScore());
+		Collections.sort(points, Comparator.reverseOrder());
+		return points.subList(0, Math.min(LENGTH, points.size()));
+	}
+
+	private static List<String> names(List<Score> scores) {
+		List<String> names = new ArrayList<String>();
+		for (Score score : scores)
+			names.add(score.getName());
+		return names;
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+}